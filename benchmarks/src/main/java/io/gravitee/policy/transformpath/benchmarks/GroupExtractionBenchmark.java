@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.benchmarks;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.engine.CompiledRuleSet;
+import io.gravitee.policy.transformpath.engine.RuleMatch;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of extracting the capture groups of the winning rule: matching it a second time to read
+ * its groups, as the policy used to do, against reusing the result of the match phase.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupExtractionBenchmark {
+
+    @Param({ "1", "8", "32" })
+    public int groups;
+
+    private Pattern pattern;
+    private CompiledRuleSet ruleSet;
+    private String path;
+
+    @Setup
+    public void setup() {
+        StringBuilder regex = new StringBuilder("/api");
+        StringBuilder value = new StringBuilder("/api");
+        for (int idx = 0; idx < groups; idx++) {
+            regex.append("/([a-z0-9-]+)");
+            value.append("/segment-").append(idx).append("-with-a-rather-long-identifier");
+        }
+
+        pattern = Pattern.compile(regex.toString());
+        ruleSet = CompiledRuleSet.compile(Collections.singletonList(new PathChange(pattern, "/target")));
+        path = value.toString();
+    }
+
+    @Benchmark
+    public void matchTwice(Blackhole blackhole) {
+        if (pattern.matcher(path).matches()) {
+            Matcher matcher = pattern.matcher(path);
+            matcher.matches();
+            for (int idx = 1; idx <= matcher.groupCount(); idx++) {
+                blackhole.consume(matcher.group(idx));
+            }
+        }
+    }
+
+    @Benchmark
+    public void matchOnce(Blackhole blackhole) {
+        RuleMatch match = ruleSet.match(path);
+        if (match != null) {
+            for (int idx = 1; idx <= match.groupCount(); idx++) {
+                blackhole.consume(match.group(idx));
+            }
+        }
+    }
+}
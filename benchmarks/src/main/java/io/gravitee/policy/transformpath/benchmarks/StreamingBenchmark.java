@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.benchmarks;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.proxy.ProxyConnection;
+import io.gravitee.gateway.api.stream.ReadStream;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.transformpath.TransformPathPolicy;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to stream a request body to the endpoint, with and without the path being transformed.
+ *
+ * The endpoint registers its handlers on the request it is invoked with and pauses the stream at regular
+ * intervals, as a slow connection would: both variants are expected to take the same time and see the
+ * same number of pauses, the body never going through the transformed request.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class StreamingBenchmark {
+
+    private static final String CONTEXT_PATH = "/products";
+
+    /**
+     * Number of chunks received by the endpoint between two pauses of the stream.
+     */
+    private static final int PAUSE_INTERVAL = 16;
+
+    @Param({ "false", "true" })
+    public boolean transformed;
+
+    @Param({ "1073741824", "4294967296" })
+    public long bodySize;
+
+    @Param({ "8192", "65536" })
+    public int chunkSize;
+
+    private TransformPathPolicyConfiguration configuration;
+    private StreamingRequest request;
+    private StubExecutionContext executionContext;
+    private Endpoint endpoint;
+    private ChainEnd policyChain;
+    private Buffer chunk;
+
+    @Setup
+    public void setup() {
+        configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChanges(Collections.singletonList(
+                new PathChange(Pattern.compile("/v1/uploads/(?<id>[^/]+)"), "/storage/{#groupName['id']}")));
+
+        request = new StreamingRequest(CONTEXT_PATH);
+        request.path(CONTEXT_PATH + "/v1/uploads/item-1");
+        executionContext = new StubExecutionContext(new StubTemplateEngine());
+        executionContext.setAttribute(ExecutionContext.ATTR_CONTEXT_PATH, CONTEXT_PATH);
+        endpoint = new Endpoint();
+        policyChain = new ChainEnd();
+        chunk = new Chunk(chunkSize);
+    }
+
+    @Benchmark
+    public long upload() {
+        executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, endpoint);
+        executionContext.removeAttribute(TransformPathPolicy.ATTR_PATH);
+
+        Request chained = request;
+        if (transformed) {
+            // As the gateway does, a policy instance is created for each request
+            new TransformPathPolicy(configuration).onRequest(request, null, executionContext, policyChain);
+            chained = policyChain.request;
+        }
+
+        Invoker invoker = (Invoker) executionContext.getAttribute(ExecutionContext.ATTR_INVOKER);
+        invoker.invoke(executionContext, chained, chained, null);
+
+        long pauses = request.send(bodySize, chunk);
+        if (endpoint.received != bodySize || pauses != bodySize / chunkSize / PAUSE_INTERVAL) {
+            throw new IllegalStateException("Received " + endpoint.received + " bytes with " + pauses + " pauses");
+        }
+        return endpoint.received;
+    }
+
+    /**
+     * Counts the bytes of the body, pausing the stream every {@link #PAUSE_INTERVAL} chunks.
+     */
+    private static final class Endpoint implements Invoker {
+
+        private long received;
+        private long chunks;
+
+        @Override
+        public Request invoke(ExecutionContext context, Request request, ReadStream<Buffer> stream,
+                              Handler<ProxyConnection> connectionHandler) {
+            received = 0;
+            chunks = 0;
+            request.bodyHandler(buffer -> {
+                received += buffer.length();
+                if (++chunks % PAUSE_INTERVAL == 0) {
+                    request.pause();
+                    request.resume();
+                }
+            });
+            request.endHandler(end -> { });
+            return request;
+        }
+    }
+
+    /**
+     * A request whose body is pushed by the benchmark, chunk by chunk, as long as the stream is not paused.
+     */
+    private static final class StreamingRequest extends StubRequest {
+
+        private Handler<Buffer> bodyHandler;
+        private Handler<Void> endHandler;
+        private boolean paused;
+        private long pauses;
+
+        private StreamingRequest(String contextPath) {
+            super(contextPath);
+        }
+
+        /**
+         * @return the number of times the stream has been paused.
+         */
+        private long send(long length, Buffer chunk) {
+            pauses = 0;
+            for (long sent = 0; sent < length; sent += chunk.length()) {
+                if (paused) {
+                    throw new IllegalStateException("Chunk sent while the stream is paused");
+                }
+                bodyHandler.handle(chunk);
+            }
+            endHandler.handle(null);
+            return pauses;
+        }
+
+        @Override
+        public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
+            this.bodyHandler = bodyHandler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            paused = true;
+            pauses++;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            paused = false;
+            return this;
+        }
+    }
+
+    /**
+     * A chunk of the body, the same one being sent over and over.
+     */
+    private static final class Chunk implements Buffer {
+
+        private final byte[] bytes;
+
+        private Chunk(int size) {
+            this.bytes = new byte[size];
+        }
+
+        @Override
+        public Buffer appendBuffer(Buffer buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Buffer appendString(String value, String charset) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Buffer appendString(String value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString(String charset) {
+            return toString(Charset.forName(charset));
+        }
+
+        @Override
+        public String toString(Charset charset) {
+            return new String(bytes, charset);
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public Object getNativeBuffer() {
+            return bytes;
+        }
+    }
+
+    private static final class ChainEnd implements PolicyChain {
+
+        private Request request;
+
+        @Override
+        public void doNext(Request request, Response response) {
+            this.request = request;
+        }
+
+        @Override
+        public void failWith(PolicyResult policyResult) {
+            throw new IllegalStateException(policyResult.message());
+        }
+
+        @Override
+        public void streamFailWith(PolicyResult policyResult) {
+            throw new IllegalStateException(policyResult.message());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.benchmarks;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.common.http.HttpVersion;
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.stream.ReadStream;
+import io.gravitee.reporter.api.http.Metrics;
+import java.time.Instant;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class StubRequest implements Request {
+
+    private final String contextPath;
+    private final HttpHeaders headers = new HttpHeaders();
+    private final MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+    private final Instant timestamp = Instant.now();
+    private final Metrics metrics = Metrics.on(timestamp.toEpochMilli()).build();
+
+    private String path;
+
+    public StubRequest(String contextPath) {
+        this.contextPath = contextPath;
+    }
+
+    /**
+     * Reuse this request for another call.
+     */
+    public StubRequest path(String path) {
+        this.path = path;
+        return this;
+    }
+
+    @Override
+    public String id() {
+        return "id";
+    }
+
+    @Override
+    public String transactionId() {
+        return "transaction-id";
+    }
+
+    @Override
+    public String uri() {
+        return path;
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String pathInfo() {
+        return path.substring(contextPath.length());
+    }
+
+    @Override
+    public String contextPath() {
+        return contextPath;
+    }
+
+    @Override
+    public MultiValueMap<String, String> parameters() {
+        return parameters;
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public HttpMethod method() {
+        return HttpMethod.GET;
+    }
+
+    @Override
+    public HttpVersion version() {
+        return HttpVersion.HTTP_1_1;
+    }
+
+    @Override
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String remoteAddress() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public String localAddress() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        return this;
+    }
+}
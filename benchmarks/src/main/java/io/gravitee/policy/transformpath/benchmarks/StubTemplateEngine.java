@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.benchmarks;
+
+import io.gravitee.gateway.api.expression.TemplateContext;
+import io.gravitee.gateway.api.expression.TemplateEngine;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * SpEL based template engine behaving like the gateway one: every conversion parses the template
+ * using <code>{</code> and <code>}</code> as expression delimiters.
+ *
+ * @author GraviteeSource Team
+ */
+public class StubTemplateEngine implements TemplateEngine {
+
+    private static final TemplateParserContext PARSER_CONTEXT = new TemplateParserContext("{", "}");
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    private final StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
+
+    private final TemplateContext templateContext = new TemplateContext() {
+        @Override
+        public void setVariable(String name, Object value) {
+            evaluationContext.setVariable(name, value);
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            return evaluationContext.lookupVariable(name);
+        }
+    };
+
+    @Override
+    public String convert(String expression) {
+        return parser.parseExpression(expression, PARSER_CONTEXT).getValue(evaluationContext, String.class);
+    }
+
+    @Override
+    public TemplateContext getTemplateContext() {
+        return templateContext;
+    }
+}
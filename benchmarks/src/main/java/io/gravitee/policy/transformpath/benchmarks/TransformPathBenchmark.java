@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.benchmarks;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.transformpath.TransformPathPolicy;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of {@link TransformPathPolicy#onRequest} for various rule sets and traffic shapes.
+ *
+ * Run with <code>-prof gc</code> to get the <code>gc.alloc.rate.norm</code> of a request.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformPathBenchmark {
+
+    private static final String CONTEXT_PATH = "/products";
+
+    /**
+     * Number of distinct paths sent to the policy, must be a power of two.
+     */
+    private static final int PATHS = 1024;
+
+    public enum PathLength {
+        SHORT(0), LONG(24);
+
+        private final int extraSegments;
+
+        PathLength(int extraSegments) {
+            this.extraSegments = extraSegments;
+        }
+    }
+
+    public enum TemplateKind {
+        LITERAL("/backend/items"),
+        GROUP("/backend/{#groupName['id']}/items{#group[1]}"),
+        EXPRESSION("/backend/{#groupName['id'].toUpperCase()}/items");
+
+        private final String template;
+
+        TemplateKind(String template) {
+            this.template = template;
+        }
+    }
+
+    @Param({ "1", "10", "100", "1000" })
+    public int rules;
+
+    @Param({ "0.0", "0.5", "1.0" })
+    public double hitRatio;
+
+    @Param({ "SHORT", "LONG" })
+    public PathLength pathLength;
+
+    @Param({ "LITERAL", "GROUP", "EXPRESSION" })
+    public TemplateKind template;
+
+    private TransformPathPolicyConfiguration configuration;
+    private StubRequest request;
+    private StubExecutionContext executionContext;
+    private Invoker invoker;
+    private PolicyChain policyChain;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        List<PathChange> pathChanges = new ArrayList<>();
+        for (int idx = 0; idx < rules; idx++) {
+            pathChanges.add(new PathChange(
+                    Pattern.compile("/service" + idx + "/items/(?<id>[^/]+)(/.*)?"), template.template));
+        }
+        configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChanges(pathChanges);
+
+        StringBuilder tail = new StringBuilder();
+        for (int idx = 0; idx < pathLength.extraSegments; idx++) {
+            tail.append("/segment").append(idx);
+        }
+
+        paths = new String[PATHS];
+        int hits = (int) Math.round(PATHS * hitRatio);
+        for (int idx = 0; idx < PATHS; idx++) {
+            // Misses share the prefix of an existing rule, the worst case for the rule set
+            String resource = (idx < hits) ? "/items/" : "/orders/";
+            paths[idx] = CONTEXT_PATH + "/service" + (idx % rules) + resource + "item-" + idx + tail;
+        }
+        shuffle(paths);
+
+        request = new StubRequest(CONTEXT_PATH);
+        executionContext = new StubExecutionContext(new StubTemplateEngine());
+        executionContext.setAttribute(ExecutionContext.ATTR_CONTEXT_PATH, CONTEXT_PATH);
+        invoker = (context, request, stream, connectionHandler) -> request;
+        policyChain = new BlackholePolicyChain(blackhole);
+    }
+
+    @Benchmark
+    public void onRequest() {
+        executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, invoker);
+        request.path(paths[next++ & (PATHS - 1)]);
+
+        // As the gateway does, a policy instance is created for each request
+        new TransformPathPolicy(configuration).onRequest(request, null, executionContext, policyChain);
+    }
+
+    private static void shuffle(String[] values) {
+        // Deterministic shuffle so that every run sees the same sequence
+        java.util.Random random = new java.util.Random(42);
+        for (int idx = values.length - 1; idx > 0; idx--) {
+            int swap = random.nextInt(idx + 1);
+            String value = values[idx];
+            values[idx] = values[swap];
+            values[swap] = value;
+        }
+    }
+
+    private static final class BlackholePolicyChain implements PolicyChain {
+
+        private final Blackhole blackhole;
+
+        private BlackholePolicyChain(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void doNext(Request request, Response response) {
+            blackhole.consume(request.path());
+        }
+
+        @Override
+        public void failWith(PolicyResult policyResult) {
+            throw new IllegalStateException(policyResult.message());
+        }
+
+        @Override
+        public void streamFailWith(PolicyResult policyResult) {
+            throw new IllegalStateException(policyResult.message());
+        }
+    }
+}
@@ -23,13 +23,15 @@ import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.api.annotations.OnRequest;
 import io.gravitee.policy.transformpath.configuration.PathChange;
 import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import io.gravitee.policy.transformpath.engine.CompiledRuleSet;
+import io.gravitee.policy.transformpath.engine.ParameterChanges;
+import io.gravitee.policy.transformpath.engine.ParameterTemplate;
+import io.gravitee.policy.transformpath.engine.PathTemplate;
+import io.gravitee.policy.transformpath.engine.RewriteCache;
+import io.gravitee.policy.transformpath.engine.RuleMatch;
+import io.gravitee.policy.transformpath.engine.RuleSetCache;
+import io.gravitee.policy.transformpath.engine.SubPath;
+import io.gravitee.policy.transformpath.metrics.RuleSetStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,71 +44,83 @@ public class TransformPathPolicy {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformPathPolicy.class);
 
-    private final static Pattern GROUP_NAME_PATTERN = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
-
     private final static String GROUP_ATTRIBUTE = "group";
     private final static String GROUP_NAME_ATTRIBUTE = "groupName";
 
+    /**
+     * Execution context attribute holding the index of the applied path change, when metrics are enabled.
+     */
+    public final static String ATTR_RULE = ExecutionContext.ATTR_PREFIX + "transform-path.rule";
+
+    /**
+     * Execution context attribute holding the rewritten path, read by the {@link TransformedInvoker} when invoking the endpoint.
+     */
+    public final static String ATTR_PATH = ExecutionContext.ATTR_PREFIX + "transform-path.path";
+
     /**
      * Transform path configuration
      */
     private final TransformPathPolicyConfiguration configuration;
 
+    /**
+     * Rule set compiled from the configuration, resolved once as the gateway creates a policy for each request
+     */
+    private final CompiledRuleSet ruleSet;
+
     public TransformPathPolicy(final TransformPathPolicyConfiguration configuration) {
         this.configuration = configuration;
+
+        // Compile and validate the path changes upfront rather than on the first request
+        this.ruleSet = RuleSetCache.get(configuration);
     }
 
     @OnRequest
     public void onRequest(Request request, Response response, ExecutionContext executionContext, PolicyChain policyChain) {
         String path = request.path();
         String contextPath = (String) executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH);
-        String subPath = path.substring(contextPath.length());
+        SubPath subPath = new SubPath(path, contextPath.length());
 
         LOGGER.debug("Transforming path from {}", subPath);
 
-        if (configuration.getPathChanges() != null && !configuration.getPathChanges().isEmpty()) {
-            // Look for a matching pattern from rules
-            Optional<PathChange> optPathChange = configuration.getPathChanges().stream().filter(
-                    pathChange -> pathChange.getPattern().matcher(subPath).matches()).findFirst();
+        if (!ruleSet.isEmpty()) {
+            RewriteCache.Rewrite rewrite = rewrite(ruleSet, subPath, request, executionContext);
 
-            if (optPathChange.isPresent()) {
-                PathChange pathChange = optPathChange.get();
-
-                LOGGER.debug("Applying rule for path {}: [{} - {}]", subPath, pathChange.getPattern(), pathChange.getPath());
-                String newPath = pathChange.getPath();
-
-                // Apply regex capture / replacement
-                Matcher match = pathChange.getPattern().matcher(subPath);
-
-                // Required to calculate capture groups
-                match.matches();
+            // With stages enabled, each stage rewrites the path produced by the previous ones
+            int iterations = (rewrite.getPath() == null) ? 0 : 1;
+            for (CompiledRuleSet stage = ruleSet.getNextStage(); stage != null; stage = stage.getNextStage()) {
+                if (iterations >= configuration.getMaxIterations()) {
+                    LOGGER.debug("Path {} rewritten {} times, skipping the remaining stages", subPath, iterations);
+                    break;
+                }
 
-                // Extract capture group by index
-                String [] groups = new String[match.groupCount()];
-                for (int idx = 0; idx < match.groupCount(); idx++) {
-                    groups[idx] = match.group(idx + 1);
+                CharSequence current = (rewrite.getPath() == null) ? subPath : rewrite.getPath();
+                RewriteCache.Rewrite next = rewrite(stage, current, request, executionContext);
+                if (next.getPath() != null) {
+                    rewrite = (rewrite.getPath() == null) ? next : rewrite.then(next);
+                    iterations++;
                 }
-                executionContext.getTemplateEngine().getTemplateContext().setVariable(GROUP_ATTRIBUTE, groups);
+            }
 
-                // Extract capture group by name
-                Set<String> extractedGroupNames = getNamedGroupCandidates(pathChange.getPattern().pattern());
-                Map<String, String> groupNames = extractedGroupNames.stream().collect(
-                        Collectors.toMap(groupName -> groupName, match::group));
-                executionContext.getTemplateEngine().getTemplateContext().setVariable(GROUP_NAME_ATTRIBUTE, groupNames);
+            String newPath = rewrite.getPath();
+            if (newPath != null) {
+                LOGGER.debug("Request path updated to {}", newPath);
 
-                // Given endpoint can be defined as the template using EL
-                LOGGER.debug("Transform endpoint {} using template engine", newPath);
-                newPath = executionContext.getTemplateEngine().convert(newPath);
+                if (ruleSet.getStatistics() != null && rewrite.getRuleIndex() >= 0) {
+                    executionContext.setAttribute(ATTR_RULE, rewrite.getRuleIndex());
+                }
 
-                LOGGER.debug("Request path updated to {}", newPath);
+                TransformedRequest transformedRequest = new TransformedRequest(request, newPath, rewrite.getParameters());
 
-                // Change the invoker to one that knows the new path
+                // Change the invoker to one that reads the new path, and reuses the transformed request
+                executionContext.setAttribute(ATTR_PATH, newPath);
                 Invoker invoker = (Invoker) executionContext.getAttribute(ExecutionContext.ATTR_INVOKER);
-                invoker = new TransformedInvoker(invoker, newPath);
-                executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, invoker);
+                // Unless a transform path policy earlier in the chain already did
+                if (!(invoker instanceof TransformedInvoker)) {
+                    executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, new TransformedInvoker(invoker, transformedRequest));
+                }
                 
                 // And continue request processing....
-                policyChain.doNext(new TransformedRequest(request, newPath), response);
+                policyChain.doNext(transformedRequest, response);
                 
                 return;
             }
@@ -116,15 +130,87 @@ public class TransformPathPolicy {
         policyChain.doNext(request, response);
     }
 
-    private Set<String> getNamedGroupCandidates(String regex) {
-        Set<String> namedGroups = new TreeSet<>();
-        Matcher m = GROUP_NAME_PATTERN.matcher(regex);
+    /**
+     * Apply the literal path mapping or the first rule matching the given path, from the cache of the rule set when possible.
+     *
+     * @return the new path and the index of the rule, or {@link RewriteCache.Rewrite#NONE} if no rule matches.
+     */
+    private RewriteCache.Rewrite rewrite(CompiledRuleSet ruleSet, CharSequence path, Request request,
+                                         ExecutionContext executionContext) {
+        // Literal path mappings are looked up first, and need no cache
+        String mapped = ruleSet.map(path);
+        if (mapped != null) {
+            if (ruleSet.getStatistics() != null) {
+                ruleSet.getStatistics().recordMappingHit();
+            }
+            return new RewriteCache.Rewrite(mapped);
+        }
+
+        RewriteCache rewriteCache = ruleSet.getRewriteCache();
+        if (rewriteCache == null) {
+            return transform(ruleSet, path, request, executionContext);
+        }
+
+        RewriteCache.Rewrite rewrite = rewriteCache.get(path);
+        if (rewrite == null) {
+            rewrite = transform(ruleSet, path, request, executionContext);
+            rewriteCache.put(path.toString(), rewrite);
+        } else {
+            LOGGER.debug("Request path {} found in cache", path);
+            if (ruleSet.getStatistics() != null && rewrite.getRuleIndex() >= 0) {
+                ruleSet.getStatistics().recordCachedHit(rewrite.getRuleIndex());
+            }
+        }
+        return rewrite;
+    }
+
+    /**
+     * Apply the first rule matching the given path.
+     *
+     * @return the new path and the index of the rule, or {@link RewriteCache.Rewrite#NONE} if no rule matches.
+     */
+    private RewriteCache.Rewrite transform(CompiledRuleSet ruleSet, CharSequence path, Request request,
+                                           ExecutionContext executionContext) {
+        RuleSetStatistics statistics = ruleSet.getStatistics();
+        long start = (statistics == null) ? 0 : System.nanoTime();
+
+        // Look for the first matching pattern from rules
+        RuleMatch match = ruleSet.match(path, request);
+
+        if (match == null) {
+            if (statistics != null) {
+                statistics.recordMiss(System.nanoTime() - start);
+            }
+            return RewriteCache.Rewrite.NONE;
+        }
+
+        long matched = (statistics == null) ? 0 : System.nanoTime();
+        PathChange pathChange = match.getRule().getPathChange();
+
+        LOGGER.debug("Applying rule for path {}: [{} - {}]", path, match.getRule().getPattern(), pathChange.getPath());
+
+        PathTemplate template = match.getRule().getTemplate();
+        ParameterTemplate parameterTemplate = match.getRule().getParameterTemplate();
+
+        // Capture groups are only exposed to the template engine when an expression reads them
+        if (template.usesGroups() || (parameterTemplate != null && parameterTemplate.usesGroups())) {
+            executionContext.getTemplateEngine().getTemplateContext().setVariable(GROUP_ATTRIBUTE, match.groups());
+        }
+        if (template.usesGroupNames() || (parameterTemplate != null && parameterTemplate.usesGroupNames())) {
+            executionContext.getTemplateEngine().getTemplateContext().setVariable(GROUP_NAME_ATTRIBUTE, match.namedGroups());
+        }
+
+        // Given endpoint can be defined as the template using EL, only its expressions go through the engine
+        LOGGER.debug("Transform endpoint {} using template engine", pathChange.getPath());
+        String newPath = template.render(match, executionContext.getTemplateEngine());
+        ParameterChanges parameters = (parameterTemplate == null) ?
+                null : parameterTemplate.render(match, executionContext.getTemplateEngine());
 
-        while (m.find()) {
-            namedGroups.add(m.group(1));
+        if (statistics != null) {
+            statistics.recordHit(match.getIndex(), matched - start, System.nanoTime() - matched);
         }
 
-        return namedGroups;
+        return new RewriteCache.Rewrite(newPath, match.getIndex(), parameters);
     }
     
 }
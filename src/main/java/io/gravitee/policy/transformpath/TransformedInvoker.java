@@ -35,16 +35,48 @@ public class TransformedInvoker implements Invoker {
     
     private final Invoker invoker;
     private final String path;
+    private final TransformedRequest request;
 
     public TransformedInvoker(Invoker invoker, String path) {
         this.invoker = invoker;
         this.path = path;
+        this.request = null;
+    }
+
+    /**
+     * @param request the transformed request handed over to the policy chain, reused when it reaches the invoker.
+     */
+    public TransformedInvoker(Invoker invoker, TransformedRequest request) {
+        this.invoker = invoker;
+        this.path = request.path();
+        this.request = request;
     }
 
     @Override
     public Request invoke(ExecutionContext ec, Request rqst, ReadStream<Buffer> stream, Handler<ProxyConnection> hndlr) {
-        LOGGER.debug("Invoking with new path {}", path);
-        return invoker.invoke(ec, new TransformedRequest(rqst, path), stream, hndlr);
+        String target = path(ec);
+        LOGGER.debug("Invoking with new path {}", target);
+        // The body keeps flowing from the original stream, only the request metadata is transformed
+        return invoker.invoke(ec, transform(rqst, target), stream, hndlr);
+    }
+
+    /**
+     * @return the path set by the last transform path policy of the chain, or the one this invoker has been created with.
+     */
+    private String path(ExecutionContext ec) {
+        Object override = (ec == null) ? null : ec.getAttribute(TransformPathPolicy.ATTR_PATH);
+        return (override instanceof String) ? (String) override : path;
+    }
+
+    private Request transform(Request rqst, String target) {
+        // No other policy wrapped the request since it has been transformed
+        if (rqst == request && target.equals(path)) {
+            return rqst;
+        }
+        if (rqst instanceof TransformedRequest && rqst.path().equals(target)) {
+            return rqst;
+        }
+        return new TransformedRequest(rqst, target);
     }
     
 }
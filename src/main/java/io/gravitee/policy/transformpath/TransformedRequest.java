@@ -23,10 +23,13 @@ import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.handler.Handler;
 import io.gravitee.gateway.api.stream.ReadStream;
+import io.gravitee.policy.transformpath.engine.ParameterChanges;
 import io.gravitee.reporter.api.http.Metrics;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.time.Instant;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -34,20 +37,44 @@ import org.slf4j.LoggerFactory;
  */
 public class TransformedRequest implements Request {
     
-    @SuppressWarnings("constantname")
-    private static final Logger LOGGER = LoggerFactory.getLogger(TransformedRequest.class);
-    
     private final Request request;
     private final String path;
+    private final ParameterChanges parameterChanges;
+
+    private MultiValueMap<String, String> parameters;
+    private String uri;
 
     public TransformedRequest(Request request, String path) {
+        this(request, path, null);
+    }
+
+    /**
+     * @param parameterChanges the query parameter changes to apply over the parameters of the request, if any.
+     */
+    public TransformedRequest(Request request, String path, ParameterChanges parameterChanges) {
+        // Replace a transformed request rather than adding a layer of delegation over the original one,
+        // unless its parameters may have been modified
+        if (request instanceof TransformedRequest && ((TransformedRequest) request).parameters == null) {
+            TransformedRequest transformed = (TransformedRequest) request;
+            request = transformed.request;
+            parameterChanges = ParameterChanges.combine(transformed.parameterChanges, parameterChanges);
+        }
         this.request = request;
+        this.parameterChanges = parameterChanges;
+        // Paths rendered by the policy already start with a slash
         if (!path.startsWith("/")) {
             path = "/" + path;
         }
         this.path = path;
     }
 
+    /**
+     * @return the original request this one transforms, whose body handlers are registered directly.
+     */
+    Request getRequest() {
+        return request;
+    }
+
     @Override
     public String id() {
         return request.id();
@@ -60,30 +87,38 @@ public class TransformedRequest implements Request {
 
     @Override
     public String uri() {
-        return request.uri();
+        // Built on first access only, most requests never read it
+        if (uri == null) {
+            uri = buildUri();
+        }
+        return uri;
     }
 
     @Override
     public String path() {
-        LOGGER.debug("Returning path {}", path);
         return path;
     }
 
     @Override
     public String pathInfo() {
-        LOGGER.debug("Returning pathInfo {}", path);
         return path;
     }
 
     @Override
     public String contextPath() {
-        LOGGER.debug("Returning contextPath {}", request.contextPath());
         return request.contextPath();
     }
 
     @Override
     public MultiValueMap<String, String> parameters() {
-        return request.parameters();
+        if (parameterChanges == null) {
+            return request.parameters();
+        }
+        // The changes are laid over the original parameters on first access, without copying them
+        if (parameters == null) {
+            parameters = parameterChanges.applyTo(request.parameters());
+        }
+        return parameters;
     }
 
     @Override
@@ -121,6 +156,7 @@ public class TransformedRequest implements Request {
         return request.metrics();
     }
 
+    // Handlers are registered on the original request, body chunks never go through this one
     @Override
     public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
         return request.bodyHandler(bodyHandler);
@@ -140,5 +176,54 @@ public class TransformedRequest implements Request {
     public ReadStream<Buffer> resume() {
         return request.resume();
     }
+
+    /**
+     * @return the new path followed by the query of the request, the changed parameters only being encoded again.
+     */
+    private String buildUri() {
+        String originalUri = request.uri();
+        int idx = (originalUri == null) ? -1 : originalUri.indexOf('?');
+        String query = (idx < 0) ? null : originalUri.substring(idx + 1);
+        if (parameterChanges != null) {
+            // Without the original uri, the query can only be rebuilt from the parameters
+            query = (originalUri == null) ? encodeQuery(parameters()) : parameterChanges.applyToQuery(query);
+        }
+
+        if (query == null || query.isEmpty()) {
+            return path;
+        }
+        return path + ((path.indexOf('?') < 0) ? '?' : '&') + query;
+    }
+
+    private static String encodeQuery(MultiValueMap<String, String> parameters) {
+        if (parameters == null) {
+            return null;
+        }
+
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, List<String>> parameter : parameters.entrySet()) {
+            String name = encode(parameter.getKey());
+            if (parameter.getValue() == null || parameter.getValue().isEmpty()) {
+                query.append((query.length() == 0) ? "" : "&").append(name);
+                continue;
+            }
+            for (String value : parameter.getValue()) {
+                query.append((query.length() == 0) ? "" : "&").append(name);
+                if (value != null) {
+                    query.append('=').append(encode(value));
+                }
+            }
+        }
+        return query.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
     
 }
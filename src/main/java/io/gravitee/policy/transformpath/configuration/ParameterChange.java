@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.configuration;
+
+/**
+ * A query parameter set or removed along with the path of the request.
+ *
+ * The value is a template, like the path of a {@link PathChange}: it may reference the capture
+ * groups of the matching pattern and use EL. A parameter without value is removed.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ParameterChange {
+
+    private String name;
+
+    private String value;
+
+    public ParameterChange() {
+    }
+
+    public ParameterChange(String name, String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the value replacing every value of the parameter, or {@code null} to remove the parameter.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
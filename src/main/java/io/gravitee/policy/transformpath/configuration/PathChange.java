@@ -16,8 +16,11 @@
 package io.gravitee.policy.transformpath.configuration;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import io.gravitee.common.http.HttpMethod;
 import io.gravitee.policy.transformpath.configuration.jackson.PatternDeserializer;
+import io.gravitee.policy.transformpath.configuration.jackson.RouteTemplateDeserializer;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -29,8 +32,39 @@ public final class PathChange {
     @JsonDeserialize(using = PatternDeserializer.class)
     private Pattern pattern;
 
+    /**
+     * Matches the path segment by segment, used instead of the pattern when set.
+     */
+    @JsonDeserialize(using = RouteTemplateDeserializer.class)
+    private RouteTemplate template;
+
     private String path;
 
+    /**
+     * Query parameters to set or remove when the path is rewritten.
+     */
+    private List<ParameterChange> parameters;
+
+    /**
+     * Stage of the path change when stages are enabled, stages rewriting the path one after the other in ascending order.
+     */
+    private int stage;
+
+    /**
+     * Methods of the requests the path change applies to, any if empty.
+     */
+    private List<HttpMethod> methods;
+
+    /**
+     * Conditions on the headers of the requests the path change applies to.
+     */
+    private List<HeaderCondition> headers;
+
+    /**
+     * Host of the requests the path change applies to, ignoring case and port, any if empty.
+     */
+    private String host;
+
     public PathChange() {
     }
 
@@ -47,6 +81,14 @@ public final class PathChange {
         this.pattern = pattern;
     }
 
+    public RouteTemplate getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(RouteTemplate template) {
+        this.template = template;
+    }
+
     public String getPath() {
         return path;
     }
@@ -54,4 +96,44 @@ public final class PathChange {
     public void setPath(String path) {
         this.path = path;
     }
+
+    public List<ParameterChange> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(List<ParameterChange> parameters) {
+        this.parameters = parameters;
+    }
+
+    public int getStage() {
+        return stage;
+    }
+
+    public void setStage(int stage) {
+        this.stage = stage;
+    }
+
+    public List<HttpMethod> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(List<HttpMethod> methods) {
+        this.methods = methods;
+    }
+
+    public List<HeaderCondition> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<HeaderCondition> headers) {
+        this.headers = headers;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.configuration;
+
+/**
+ * The regular expression engine used to match the path change patterns.
+ *
+ * @author GraviteeSource Team
+ */
+public enum RegexEngine {
+
+    /**
+     * {@link java.util.regex.Pattern}, supporting the whole syntax but backtracking.
+     */
+    JDK,
+
+    /**
+     * An automaton based engine, matching in a time proportional to the path length but not supporting
+     * back-references, look-arounds, possessive quantifiers nor flags.
+     */
+    LINEAR
+}
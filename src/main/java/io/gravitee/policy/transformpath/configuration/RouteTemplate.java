@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A route template such as {@code /v1/users/{id}/orders}, an alternative to a regular expression
+ * for the common case of matching a path segment by segment.
+ *
+ * Each segment of the template is either literal text, a {@code {name}} variable matching exactly
+ * one non-empty segment, or, as the last segment only, a {@code {name*}} catch-all matching the rest
+ * of the path. Variables are exposed as capture groups, by position and by name.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RouteTemplate {
+
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z][a-zA-Z0-9]*");
+
+    private static final String META_CHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+
+    public enum SegmentType {
+        LITERAL,
+        VARIABLE,
+        CATCH_ALL
+    }
+
+    private final String source;
+    private final List<Segment> segments;
+    private final Pattern pattern;
+
+    private RouteTemplate(String source, List<Segment> segments) {
+        this.source = source;
+        this.segments = Collections.unmodifiableList(segments);
+        this.pattern = Pattern.compile(toRegex(segments));
+    }
+
+    /**
+     * @param template the route template.
+     * @return the parsed template.
+     * @throws IllegalArgumentException if the template is malformed.
+     */
+    public static RouteTemplate parse(String template) {
+        if (template == null || !template.startsWith("/")) {
+            throw new IllegalArgumentException("Route template must start with a slash: " + template);
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        String[] parts = template.substring(1).split("/", -1);
+
+        for (int idx = 0; idx < parts.length; idx++) {
+            String part = parts[idx];
+            if (part.startsWith("{") && part.endsWith("}")) {
+                boolean catchAll = part.endsWith("*}");
+                String name = part.substring(1, part.length() - (catchAll ? 2 : 1));
+                if (!NAME.matcher(name).matches()) {
+                    throw new IllegalArgumentException("Illegal variable name '" + name + "' in route template " + template);
+                }
+                if (!names.add(name)) {
+                    throw new IllegalArgumentException("Duplicate variable '" + name + "' in route template " + template);
+                }
+                if (catchAll && idx != parts.length - 1) {
+                    throw new IllegalArgumentException("Catch-all variable '" + name + "' must be the last segment of route template " + template);
+                }
+                segments.add(new Segment(catchAll ? SegmentType.CATCH_ALL : SegmentType.VARIABLE, name));
+            } else if (part.indexOf('{') >= 0 || part.indexOf('}') >= 0) {
+                throw new IllegalArgumentException("Variables must span a whole segment in route template " + template);
+            } else {
+                segments.add(new Segment(SegmentType.LITERAL, part));
+            }
+        }
+
+        return new RouteTemplate(template, segments);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the regular expression matching the same paths as this template, with a named group per variable.
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static String toRegex(List<Segment> segments) {
+        StringBuilder regex = new StringBuilder();
+        for (Segment segment : segments) {
+            regex.append('/');
+            switch (segment.type) {
+                case LITERAL:
+                    for (int idx = 0; idx < segment.value.length(); idx++) {
+                        char c = segment.value.charAt(idx);
+                        if (META_CHARACTERS.indexOf(c) >= 0) {
+                            regex.append('\\');
+                        }
+                        regex.append(c);
+                    }
+                    break;
+                case VARIABLE:
+                    regex.append("(?<").append(segment.value).append(">[^/]+)");
+                    break;
+                default:
+                    regex.append("(?<").append(segment.value).append(">[\\s\\S]*)");
+                    break;
+            }
+        }
+        return regex.toString();
+    }
+
+    public static final class Segment {
+
+        private final SegmentType type;
+        private final String value;
+
+        private Segment(SegmentType type, String value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        public SegmentType getType() {
+            return type;
+        }
+
+        /**
+         * @return the literal text, or the variable name.
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import io.gravitee.policy.api.PolicyConfiguration;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author David BRASSELY (brasseld at gmail.com)
@@ -27,6 +28,57 @@ public class TransformPathPolicyConfiguration implements PolicyConfiguration {
 
     private List<PathChange> pathChanges = new ArrayList<>();
 
+    /**
+     * Target path of each literal path, looked up before the path changes.
+     */
+    private Map<String, String> pathMappings;
+
+    /**
+     * Maximum number of rewritten paths to cache, 0 to disable caching.
+     */
+    private int cacheSize;
+
+    /**
+     * Engine used to match the patterns, {@link RegexEngine#JDK} by default.
+     */
+    private RegexEngine regexEngine = RegexEngine.JDK;
+
+    /**
+     * Maximum number of characters the JDK engine may read to match a path against a pattern, 0 for no limit.
+     * A rule exceeding it is considered as not matching.
+     */
+    private int matchStepLimit;
+
+    /**
+     * Record the statistics of each path change, and the index of the applied one as an execution context attribute.
+     */
+    private boolean metricsEnabled;
+
+    /**
+     * Number of matched requests between two reorderings of the path changes by hit count, 0 to keep the configured order.
+     */
+    private int adaptiveOrderInterval;
+
+    /**
+     * Maximum number of stages rewriting a request, 0 to disable stages: only the first matching path change applies.
+     */
+    private int maxIterations;
+
+    /**
+     * What to do with the problems found while compiling the path changes, {@link ValidationMode#WARN} by default.
+     */
+    private ValidationMode validation = ValidationMode.WARN;
+
+    /**
+     * Path of a JSON file holding the list of path changes, used instead of {@link #pathChanges} when set.
+     */
+    private String pathChangesFile;
+
+    /**
+     * Seconds between two checks of the path changes file for modifications, 0 to load it only once.
+     */
+    private int reloadInterval;
+
     public List<PathChange> getPathChanges() {
         return pathChanges;
     }
@@ -34,4 +86,84 @@ public class TransformPathPolicyConfiguration implements PolicyConfiguration {
     public void setPathChanges(List<PathChange> pathChanges) {
         this.pathChanges = pathChanges;
     }
+
+    public Map<String, String> getPathMappings() {
+        return pathMappings;
+    }
+
+    public void setPathMappings(Map<String, String> pathMappings) {
+        this.pathMappings = pathMappings;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public RegexEngine getRegexEngine() {
+        return regexEngine;
+    }
+
+    public void setRegexEngine(RegexEngine regexEngine) {
+        this.regexEngine = regexEngine;
+    }
+
+    public int getMatchStepLimit() {
+        return matchStepLimit;
+    }
+
+    public void setMatchStepLimit(int matchStepLimit) {
+        this.matchStepLimit = matchStepLimit;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public int getAdaptiveOrderInterval() {
+        return adaptiveOrderInterval;
+    }
+
+    public void setAdaptiveOrderInterval(int adaptiveOrderInterval) {
+        this.adaptiveOrderInterval = adaptiveOrderInterval;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public ValidationMode getValidation() {
+        return validation;
+    }
+
+    public void setValidation(ValidationMode validation) {
+        this.validation = validation;
+    }
+
+    public String getPathChangesFile() {
+        return pathChangesFile;
+    }
+
+    public void setPathChangesFile(String pathChangesFile) {
+        this.pathChangesFile = pathChangesFile;
+    }
+
+    public int getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(int reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
 }
@@ -19,6 +19,9 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import io.gravitee.policy.transformpath.interning.Interner;
+import io.gravitee.policy.transformpath.interning.Interners;
 
 import java.io.IOException;
 import java.util.regex.Pattern;
@@ -30,13 +33,19 @@ import java.util.regex.PatternSyntaxException;
  */
 public class PatternDeserializer extends JsonDeserializer<Pattern> {
 
+    /**
+     * Patterns shared by every deployed configuration.
+     */
+    private static final Interner<String, Pattern> PATTERNS = Interners.create("patterns", String::length);
+
     @Override
     public Pattern deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
         String pattern = jsonParser.getText();
         try {
-            return Pattern.compile(pattern);
+            return PATTERNS.intern(pattern, Pattern::compile);
         } catch (PatternSyntaxException pse) {
-            throw new RuntimeException(pse);
+            throw new JsonMappingException("Invalid pattern " + pattern + ": " + pse.getDescription(),
+                    jsonParser.getCurrentLocation(), pse);
         }
     }
 }
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.configuration.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import io.gravitee.policy.transformpath.configuration.RouteTemplate;
+import io.gravitee.policy.transformpath.interning.Interner;
+import io.gravitee.policy.transformpath.interning.Interners;
+
+import java.io.IOException;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RouteTemplateDeserializer extends JsonDeserializer<RouteTemplate> {
+
+    /**
+     * Route templates shared by every deployed configuration.
+     */
+    private static final Interner<String, RouteTemplate> ROUTE_TEMPLATES = Interners.create("routeTemplates", String::length);
+
+    @Override
+    public RouteTemplate deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
+        return ROUTE_TEMPLATES.intern(jsonParser.getText(), RouteTemplate::parse);
+    }
+}
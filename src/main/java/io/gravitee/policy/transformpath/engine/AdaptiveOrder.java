@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes, from the observed hits, the order in which rules are evaluated.
+ *
+ * A rule may only be evaluated before a rule declared earlier if both are proven disjoint by the
+ * {@link OverlapAnalyzer}: whatever the order, the first rule matching a path in evaluation order is
+ * then the first one in configuration order. Among the rules whose overlapping predecessors are all
+ * placed, the most hit one comes first.
+ *
+ * Matches are counted without any shared compare-and-set, each thread only summing the count once
+ * every few of its own matches to tell whether the order is due. The order is computed by a background
+ * thread, see {@link #executor}, as it takes milliseconds for large rule sets.
+ *
+ * @author GraviteeSource Team
+ */
+final class AdaptiveOrder {
+
+    /**
+     * Number of matches of a thread between two checks of the match count.
+     */
+    private static final int CHECK_INTERVAL = 64;
+
+    static final Executor REORDERER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transform-path-reorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Computes the orders and rebuilds the routing of the rule sets, replaced by tests only.
+     */
+    static volatile Executor executor = REORDERER;
+
+    private final int[][] successors;
+    private final int[] predecessorCounts;
+    private final LongAdder[] hits;
+    private final int interval;
+    private final int checkInterval;
+    private final LongAdder matches = new LongAdder();
+    private final AtomicLong nextOrder;
+    private final ThreadLocal<int[]> countdown;
+
+    /**
+     * @param interval the number of matches between two computations of the order.
+     */
+    AdaptiveOrder(CompiledRule[] rules, int interval) {
+        this.interval = interval;
+        this.checkInterval = Math.max(1, Math.min(CHECK_INTERVAL, interval));
+        this.nextOrder = new AtomicLong(interval);
+        this.countdown = ThreadLocal.withInitial(() -> new int[] { checkInterval });
+        this.hits = new LongAdder[rules.length];
+        this.successors = new int[rules.length][];
+        this.predecessorCounts = new int[rules.length];
+
+        OverlapAnalyzer analyzer = new OverlapAnalyzer(rules);
+        for (int first = 0; first < rules.length; first++) {
+            hits[first] = new LongAdder();
+
+            int[] overlapping = new int[rules.length - first - 1];
+            int count = 0;
+            for (int second = first + 1; second < rules.length; second++) {
+                if (!analyzer.analyze(first, second).isDisjoint()) {
+                    overlapping[count++] = second;
+                    predecessorCounts[second]++;
+                }
+            }
+            successors[first] = Arrays.copyOf(overlapping, count);
+        }
+    }
+
+    /**
+     * @param index the index of the matching rule.
+     * @return {@code true} if the order should be computed again.
+     */
+    boolean recordHit(int index) {
+        hits[index].increment();
+        if (interval <= 0) {
+            return false;
+        }
+
+        matches.increment();
+        int[] remaining = countdown.get();
+        if (--remaining[0] > 0) {
+            return false;
+        }
+        remaining[0] = checkInterval;
+
+        // A single thread among those observing the count past the threshold computes the order
+        long count = matches.sum();
+        long next = nextOrder.get();
+        return count >= next && nextOrder.compareAndSet(next, count + interval);
+    }
+
+    /**
+     * @return the indexes of the rules, in evaluation order.
+     */
+    int[] order() {
+        int size = hits.length;
+        long[] snapshot = new long[size];
+        int[] remaining = predecessorCounts.clone();
+        for (int idx = 0; idx < size; idx++) {
+            snapshot[idx] = hits[idx].sum();
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>(Math.max(1, size), (left, right) -> {
+            int comparison = Long.compare(snapshot[right], snapshot[left]);
+            return (comparison != 0) ? comparison : Integer.compare(left, right);
+        });
+        for (int idx = 0; idx < size; idx++) {
+            if (remaining[idx] == 0) {
+                ready.add(idx);
+            }
+        }
+
+        int[] order = new int[size];
+        int position = 0;
+        while (!ready.isEmpty()) {
+            int index = ready.poll();
+            order[position++] = index;
+            for (int successor : successors[index]) {
+                if (--remaining[successor] == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+
+        return order;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+/**
+ * A path wrapper counting the characters read by a backtracking regex engine, aborting the match
+ * once a given number of reads is exceeded.
+ *
+ * @author GraviteeSource Team
+ */
+final class BudgetedCharSequence implements CharSequence {
+
+    private final CharSequence path;
+    private final int limit;
+    private int steps;
+
+    BudgetedCharSequence(CharSequence path, int limit) {
+        this.path = path;
+        this.limit = limit;
+    }
+
+    @Override
+    public int length() {
+        return path.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++steps > limit) {
+            throw BudgetExceededException.INSTANCE;
+        }
+        return path.charAt(index);
+    }
+
+    /**
+     * Only used to extract capture groups, which does not count as a step.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return path.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    /**
+     * Thrown when the step budget is exceeded, shared and without stack trace as it is only used to unwind the matcher.
+     */
+    static final class BudgetExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+        private BudgetExceededException() {
+            super("Match step budget exceeded", null, false, false);
+        }
+    }
+}
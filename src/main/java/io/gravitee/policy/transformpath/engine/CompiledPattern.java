@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.engine.regex.LinearRegex;
+import io.gravitee.policy.transformpath.interning.Interner;
+import io.gravitee.policy.transformpath.interning.Interners;
+import java.util.regex.Pattern;
+
+/**
+ * The analysis of a pattern, shared by every rule using the same pattern source and flags.
+ *
+ * @author GraviteeSource Team
+ */
+final class CompiledPattern {
+
+    private static final Interner<String, CompiledPattern> PATTERNS = Interners.create("compiledPatterns", String::length);
+
+    private final Pattern pattern;
+    private final String literalPrefix;
+    private final String literal;
+    private final Prefilter prefilter;
+    private final NamedGroups namedGroups;
+    private final int groupCount;
+
+    private LinearRegex linear;
+    private IllegalArgumentException linearFailure;
+
+    private CompiledPattern(Pattern pattern) {
+        this.pattern = pattern;
+        this.literalPrefix = PatternAnalyzer.literalPrefix(pattern);
+        this.literal = PatternAnalyzer.literal(pattern);
+        this.prefilter = PatternAnalyzer.prefilter(pattern);
+        this.namedGroups = PatternAnalyzer.namedGroups(pattern);
+        this.groupCount = pattern.matcher("").groupCount();
+    }
+
+    /**
+     * @return the shared analysis of the pattern.
+     */
+    static CompiledPattern of(Pattern pattern) {
+        return PATTERNS.intern(pattern.flags() + ":" + pattern.pattern(), key -> new CompiledPattern(pattern));
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * @return the only path matched by the pattern, or {@code null} if it is not plain literal text.
+     */
+    String getLiteral() {
+        return literal;
+    }
+
+    Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+    NamedGroups getNamedGroups() {
+        return namedGroups;
+    }
+
+    int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return the pattern compiled for the linear engine, on first use only.
+     * @throws IllegalArgumentException if the linear engine does not support the pattern.
+     */
+    synchronized LinearRegex linear() {
+        if (linear == null && linearFailure == null) {
+            try {
+                linear = LinearRegex.compile(pattern);
+            } catch (IllegalArgumentException iae) {
+                linearFailure = iae;
+            }
+        }
+        if (linearFailure != null) {
+            throw linearFailure;
+        }
+        return linear;
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.RegexEngine;
+import io.gravitee.policy.transformpath.configuration.RouteTemplate;
+import io.gravitee.policy.transformpath.engine.regex.LinearRegex;
+import io.gravitee.policy.transformpath.metrics.RuleSetStatistics;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PathChange} prepared for matching.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CompiledRule {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledRule.class);
+
+    private final int index;
+    private final int position;
+    private final PathChange pathChange;
+    private final CompiledPattern compiledPattern;
+    private final Pattern pattern;
+    private final String literalPrefix;
+    private final Prefilter prefilter;
+    private final NamedGroups namedGroups;
+    private final PathTemplate template;
+    private final ParameterTemplate parameterTemplate;
+    private final RegexMatcher matcher;
+    private final boolean linear;
+    private final LongAdder budgetExceeded = new LongAdder();
+    private final AtomicBoolean budgetExceededReported = new AtomicBoolean();
+    private final RuleSetStatistics statistics;
+
+    CompiledRule(int index, PathChange pathChange) {
+        this(index, index, pathChange, RegexEngine.JDK, 0, null);
+    }
+
+    /**
+     * @param index the position of the rule in the configured list of path changes.
+     * @param position the position of the rule in its rule set, the index unless stages are enabled.
+     * @param engine the regular expression engine.
+     * @param matchStepLimit the maximum number of characters the JDK engine may read to match a path,
+     *                       0 for no limit.
+     * @param statistics the statistics of the rule set, {@code null} if metrics are disabled.
+     */
+    CompiledRule(int index, int position, PathChange pathChange, RegexEngine engine, int matchStepLimit,
+                 RuleSetStatistics statistics) {
+        this.index = index;
+        this.position = position;
+        this.pathChange = pathChange;
+        this.statistics = statistics;
+        Pattern source = (pathChange.getTemplate() != null) ? pathChange.getTemplate().getPattern() : pathChange.getPattern();
+        if (source == null) {
+            throw new IllegalArgumentException("Path change #" + index + " defines neither a pattern nor a template");
+        }
+
+        // The analysis of the pattern is shared with the other rules using the same one
+        this.compiledPattern = CompiledPattern.of(source);
+        this.pattern = compiledPattern.getPattern();
+        this.literalPrefix = compiledPattern.getLiteralPrefix();
+        this.prefilter = compiledPattern.getPrefilter();
+        this.namedGroups = compiledPattern.getNamedGroups();
+        this.template = PathTemplate.compile(pathChange.getPath(), compiledPattern.getGroupCount());
+        this.parameterTemplate = ParameterTemplate.compile(pathChange.getParameters(), compiledPattern.getGroupCount());
+        RegexMatcher linearMatcher = (engine == RegexEngine.LINEAR) ? linearMatcher() : null;
+        this.linear = linearMatcher != null;
+        this.matcher = linear ? linearMatcher : jdkMatcher(pattern, matchStepLimit);
+    }
+
+    /**
+     * @return the position of the rule in the configured list of path changes.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public PathChange getPathChange() {
+        return pathChange;
+    }
+
+    /**
+     * @return the pattern of the rule, or the regular expression equivalent to its route template.
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the route template of the rule, or {@code null} if the rule is a regular expression.
+     */
+    public RouteTemplate getRouteTemplate() {
+        return pathChange.getTemplate();
+    }
+
+    /**
+     * @return the named capture groups of the rule pattern, resolved to their group index.
+     */
+    public NamedGroups getNamedGroups() {
+        return namedGroups;
+    }
+
+    /**
+     * @return the parsed target path of the rule.
+     */
+    public PathTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the parsed query parameter changes of the rule, or {@code null} if it has none.
+     */
+    public ParameterTemplate getParameterTemplate() {
+        return parameterTemplate;
+    }
+
+    /**
+     * @return {@code true} if the rendering of the rule depends on nothing but the matched path.
+     */
+    boolean isDeterministic() {
+        return !template.isExpression() && (parameterTemplate == null || !parameterTemplate.isExpression());
+    }
+
+    /**
+     * @param path the path to match, entirely.
+     * @return the match and its capture groups, or {@code null} if the path does not match.
+     */
+    public MatchResult match(CharSequence path) {
+        return matcher.match(path);
+    }
+
+    /**
+     * @return {@code true} if the rule is matched by the linear engine, {@code false} if by the JDK engine.
+     */
+    public boolean isLinear() {
+        return linear;
+    }
+
+    /**
+     * @return the number of matches aborted because they exceeded the step limit.
+     */
+    public long getBudgetExceededCount() {
+        return budgetExceeded.sum();
+    }
+
+    /**
+     * @return the position of the rule in its rule set.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * @return the only path matched by the rule pattern, or {@code null} if it is not plain literal text
+     *         or the rule is a route template.
+     */
+    String getLiteral() {
+        return (pathChange.getTemplate() == null) ? compiledPattern.getLiteral() : null;
+    }
+
+    Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+    private RegexMatcher linearMatcher() {
+        LinearRegex linear;
+        try {
+            linear = compiledPattern.linear();
+        } catch (IllegalArgumentException iae) {
+            LOGGER.warn("Pattern {} is not supported by the linear engine, falling back to the JDK engine: {}",
+                    compiledPattern.getPattern(), iae.getMessage());
+            return null;
+        }
+
+        // The values of repeated groups may differ from the JDK engine ones, those read by the rule must not
+        for (int group = 1; group <= linear.groupCount(); group++) {
+            if (linear.isRepeated(group) && (template.readsGroup(group, namedGroups)
+                    || (parameterTemplate != null && parameterTemplate.readsGroup(group, namedGroups)))) {
+                LOGGER.warn("Pattern {} captures group {} read by path change #{} inside a repeated construct, "
+                        + "falling back to the JDK engine", compiledPattern.getPattern(), group, index);
+                return null;
+            }
+        }
+        return linear::match;
+    }
+
+    private RegexMatcher jdkMatcher(Pattern pattern, int matchStepLimit) {
+        if (matchStepLimit > 0) {
+            return path -> budgetedMatch(pattern, path, matchStepLimit);
+        }
+
+        return path -> {
+            Matcher matcher = pattern.matcher(path);
+            return matcher.matches() ? matcher : null;
+        };
+    }
+
+    /**
+     * Match with the JDK engine, considering the rule does not match once the step limit is exceeded.
+     */
+    private MatchResult budgetedMatch(Pattern pattern, CharSequence path, int matchStepLimit) {
+        Matcher matcher = pattern.matcher(new BudgetedCharSequence(path, matchStepLimit));
+        try {
+            return matcher.matches() ? matcher : null;
+        } catch (BudgetedCharSequence.BudgetExceededException bee) {
+            budgetExceeded.increment();
+            if (statistics != null) {
+                statistics.recordBudgetExceeded(index);
+            }
+            // Paths are sent by clients, which must not be able to flood the logs
+            if (budgetExceededReported.compareAndSet(false, true)) {
+                LOGGER.warn("Path change #{} ({}) exceeded {} steps to match a path of {} characters, considered as not matching, "
+                        + "further occurrences are logged at DEBUG level", index, pattern, matchStepLimit, path.length());
+            } else {
+                LOGGER.debug("Path change #{} exceeded {} steps to match a path of {} characters",
+                        index, matchStepLimit, path.length());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.gateway.api.Request;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.RegexEngine;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.engine.regex.LinearMatchResult;
+import io.gravitee.policy.transformpath.metrics.RuleSetStatistics;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.MatchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The list of path changes of a configuration, compiled once for fast first-match lookups.
+ *
+ * Rules are indexed by the literal prefix of their pattern in a {@link PrefixTrie}: a single walk
+ * over the path returns, in configuration order, only the rules whose prefix is compatible with it,
+ * and the regular expression of every other rule is never evaluated. Candidates are then checked
+ * against their {@link Prefilter} (length bounds, required literals) before running the regex.
+ *
+ * Rules defined by a route template are matched by a {@link SegmentTree} instead, the first
+ * matching template bounding the regular expressions left to evaluate.
+ *
+ * With an adaptive order, the trie is periodically rebuilt in the background to evaluate the most hit rules first,
+ * as far as the {@link AdaptiveOrder} proves it does not change which rule matches a path.
+ *
+ * Rules having method, header or host conditions are narrowed down by a {@link ConditionIndex}
+ * before any of them is evaluated.
+ *
+ * With stages enabled, each stage is a rule set of its own, rewriting the path produced by the
+ * previous one, see {@link #getNextStage()}.
+ *
+ * Rules whose pattern is plain literal text are looked up in a {@link LiteralTable} rather than
+ * indexed by their prefix, a hit only requiring the rules evaluated before it to be checked. The
+ * literal path mappings of the configuration are held by another table, probed before any rule,
+ * see {@link #map(CharSequence)}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CompiledRuleSet {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledRuleSet.class);
+
+    static final CompiledRuleSet EMPTY = new CompiledRuleSet(Collections.emptyList(), new CompiledRule[0],
+            new TransformPathPolicyConfiguration(), null, null, null);
+
+    private final List<PathChange> source;
+    private final CompiledRule[] rules;
+    private final RewriteCache rewriteCache;
+    private final RuleSetStatistics statistics;
+    private final AdaptiveOrder adaptiveOrder;
+    private final SegmentTree segmentTree;
+    private final ConditionIndex conditions;
+    private final LiteralTable literals;
+    private final PathMappings mappings;
+    private final CompiledRuleSet nextStage;
+    private final int maxIterations;
+    private volatile Routing routing;
+    private final AtomicBoolean reordering = new AtomicBoolean();
+
+    private CompiledRuleSet(List<PathChange> source, CompiledRule[] rules, TransformPathPolicyConfiguration options,
+                            RuleSetStatistics statistics, PathMappings mappings, CompiledRuleSet nextStage) {
+        this.source = source;
+        this.rules = rules;
+        this.statistics = statistics;
+        this.mappings = mappings;
+        this.nextStage = nextStage;
+        this.maxIterations = options.getMaxIterations();
+        this.conditions = ConditionIndex.build(rules);
+        this.literals = literals(rules);
+        // Rewrites depending on anything but the path cannot be cached
+        this.rewriteCache = (options.getCacheSize() > 0 && rules.length != 0 && isDeterministic(rules) && conditions == null) ?
+                new RewriteCache(options.getCacheSize()) : null;
+        this.adaptiveOrder = (options.getAdaptiveOrderInterval() > 0 && rules.length > 1) ?
+                new AdaptiveOrder(rules, options.getAdaptiveOrderInterval()) : null;
+
+        this.segmentTree = SegmentTree.build(rules);
+
+        int[] order = new int[rules.length];
+        for (int idx = 0; idx < order.length; idx++) {
+            order[idx] = idx;
+        }
+        this.routing = new Routing(rules, order, literals);
+    }
+
+    public static CompiledRuleSet compile(List<PathChange> pathChanges) {
+        return compile(pathChanges, new TransformPathPolicyConfiguration());
+    }
+
+    /**
+     * @param configuration the policy configuration, providing the path changes and the compilation options.
+     * @return the compiled rule set.
+     */
+    public static CompiledRuleSet fromConfiguration(TransformPathPolicyConfiguration configuration) {
+        return compile(configuration.getPathChanges(), configuration);
+    }
+
+    /**
+     * @param pathChanges the path changes to compile.
+     * @param options the configuration providing the compilation options (cache size, regex engine,
+     *                match step limit, metrics, adaptive order, stages) and the path mappings, its path
+     *                changes are ignored.
+     * @return the compiled rule set, the first stage if stages are enabled.
+     */
+    public static CompiledRuleSet compile(List<PathChange> pathChanges, TransformPathPolicyConfiguration options) {
+        PathMappings mappings = PathMappings.build(options.getPathMappings());
+        if (pathChanges == null) {
+            pathChanges = Collections.emptyList();
+        }
+        if (pathChanges.isEmpty() && mappings == null) {
+            return EMPTY;
+        }
+
+        RuleSetStatistics statistics = options.isMetricsEnabled() ? new RuleSetStatistics(pathChanges.size()) : null;
+
+        // Without stages, every path change belongs to a single rule set
+        SortedMap<Integer, List<Integer>> stages = new TreeMap<>();
+        for (int idx = 0; idx < pathChanges.size(); idx++) {
+            int stage = (options.getMaxIterations() > 0) ? pathChanges.get(idx).getStage() : 0;
+            stages.computeIfAbsent(stage, key -> new ArrayList<>()).add(idx);
+        }
+        if (stages.isEmpty()) {
+            stages.put(0, new ArrayList<>());
+        }
+
+        RegexEngine engine = (options.getRegexEngine() == null) ? RegexEngine.JDK : options.getRegexEngine();
+        List<List<Integer>> indexes = new ArrayList<>(stages.values());
+        CompiledRuleSet ruleSet = null;
+
+        for (int stage = indexes.size() - 1; stage >= 0; stage--) {
+            List<Integer> stageIndexes = indexes.get(stage);
+            CompiledRule[] rules = new CompiledRule[stageIndexes.size()];
+            for (int position = 0; position < rules.length; position++) {
+                int index = stageIndexes.get(position);
+                rules[position] = new CompiledRule(index, position, pathChanges.get(index), engine, options.getMatchStepLimit(),
+                        statistics);
+            }
+            // Path mappings are applied before the rules of the first stage
+            ruleSet = new CompiledRuleSet(pathChanges, rules, options, statistics, (stage == 0) ? mappings : null, ruleSet);
+            if (ruleSet.literals != null) {
+                LOGGER.debug("{} literal patterns indexed in {} bytes", ruleSet.literals.size(), ruleSet.literals.footprint());
+            }
+        }
+        if (mappings != null) {
+            LOGGER.debug("{} path mappings indexed in {} bytes", mappings.size(), mappings.footprint());
+        }
+
+        return ruleSet;
+    }
+
+    /**
+     * Look for the first rule, in configuration order, matching the given path.
+     *
+     * @param path the path to match, without the API context path.
+     * @return the matching rule and its capture groups, or {@code null} if no rule matches.
+     */
+    public RuleMatch match(CharSequence path) {
+        return match(path, (BitSet) null);
+    }
+
+    /**
+     * Look for the first rule, in configuration order, matching the given path and whose conditions
+     * the request satisfies.
+     *
+     * @param path the path to match, without the API context path.
+     * @param request the request, to evaluate the conditions of the rules.
+     * @return the matching rule and its capture groups, or {@code null} if no rule matches.
+     */
+    public RuleMatch match(CharSequence path, Request request) {
+        if (conditions == null) {
+            return match(path, (BitSet) null);
+        }
+
+        BitSet eligible = conditions.eligible(request);
+        return eligible.isEmpty() ? null : match(path, eligible);
+    }
+
+    /**
+     * Look the given path up in the literal path mappings.
+     *
+     * @param path the path to map, without the API context path.
+     * @return the path it is mapped to, or {@code null} if it is not mapped.
+     */
+    public String map(CharSequence path) {
+        return (mappings == null) ? null : mappings.map(path);
+    }
+
+    private RuleMatch match(CharSequence path, BitSet eligible) {
+        Routing current = routing;
+        RuleMatch match = (segmentTree == null) ? null : segmentTree.match(path, eligible);
+
+        if (literals != null) {
+            int position = literals.get(path);
+            if (position != LiteralTable.NOT_FOUND && (eligible == null || eligible.get(position))
+                    && (match == null || current.ranks[position] < current.ranks[match.getRule().getPosition()])) {
+                match = new RuleMatch(rules[position], new LinearMatchResult(path, new int[] { 0, path.length() }));
+            }
+        }
+
+        // Only the regular expressions evaluated before the matching route template may take precedence over it
+        int limit = (match == null) ? Integer.MAX_VALUE : current.ranks[match.getRule().getPosition()];
+
+        for (int position : current.trie.candidates(path)) {
+            if (position >= limit) {
+                break;
+            }
+
+            CompiledRule rule = rules[current.order[position]];
+            if ((eligible != null && !eligible.get(rule.getPosition())) || !rule.getPrefilter().accepts(path)) {
+                continue;
+            }
+
+            MatchResult result = rule.match(path);
+            if (result != null) {
+                match = new RuleMatch(rule, result);
+                break;
+            }
+        }
+
+        if (match != null && adaptiveOrder != null && adaptiveOrder.recordHit(match.getRule().getPosition())) {
+            reorder();
+        }
+
+        return match;
+    }
+
+    /**
+     * Compute the order again and rebuild the routing in the background, the requests using the current
+     * routing until the new one is ready. Only one computation is in flight at a time.
+     */
+    private void reorder() {
+        if (!reordering.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            AdaptiveOrder.executor.execute(() -> {
+                try {
+                    routing = new Routing(rules, adaptiveOrder.order(), literals);
+                } finally {
+                    reordering.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            reordering.set(false);
+        }
+    }
+
+    /**
+     * @return the positions of the rules in this rule set, in evaluation order.
+     */
+    public int[] getOrder() {
+        return routing.order.clone();
+    }
+
+    /**
+     * @param position the position of the rule in this rule set, its index in the configured list of
+     *                 path changes unless stages are enabled.
+     * @return the compiled rule.
+     */
+    public CompiledRule getRule(int position) {
+        return rules[position];
+    }
+
+    /**
+     * @return the stage rewriting the path produced by this one, or {@code null} if this is the last stage.
+     */
+    public CompiledRuleSet getNextStage() {
+        return nextStage;
+    }
+
+    /**
+     * @return the maximum number of rewrites of a path by the stages, {@code 0} if stages are disabled.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * @return the cache of rewrite results, or {@code null} if caching is disabled.
+     */
+    public RewriteCache getRewriteCache() {
+        return rewriteCache;
+    }
+
+    /**
+     * @return the statistics of the rules of all the stages, or {@code null} if metrics are disabled.
+     */
+    public RuleSetStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the table of the rules whose pattern is plain literal text, or {@code null} if there is none.
+     */
+    public LiteralTable getLiterals() {
+        return literals;
+    }
+
+    /**
+     * @return the table of the literal path mappings, or {@code null} if there is none.
+     */
+    public LiteralTable getMappings() {
+        return (mappings == null) ? null : mappings.getTable();
+    }
+
+    /**
+     * @return the estimated number of bytes retained by the literal patterns and path mappings tables of all stages.
+     */
+    public long getLiteralFootprint() {
+        long footprint = 0;
+        for (CompiledRuleSet stage = this; stage != null; stage = stage.nextStage) {
+            footprint += (stage.literals == null) ? 0 : stage.literals.footprint();
+            footprint += (stage.mappings == null) ? 0 : stage.mappings.footprint();
+        }
+        return footprint;
+    }
+
+    public boolean isEmpty() {
+        return rules.length == 0 && mappings == null;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    CompiledRule[] getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the list of path changes this rule set has been compiled from.
+     */
+    List<PathChange> getSource() {
+        return source;
+    }
+
+    /**
+     * @return the table of the rules matching a single literal path, or {@code null} if there is none.
+     */
+    private static LiteralTable literals(CompiledRule[] rules) {
+        LiteralTable table = null;
+        for (CompiledRule rule : rules) {
+            String literal = rule.getLiteral();
+            if (literal == null) {
+                continue;
+            }
+            if (table == null) {
+                table = new LiteralTable(rules.length);
+            }
+            // A later rule matching the same path is left to the trie, in case the first one has unmet conditions
+            table.put(literal, rule.getPosition());
+        }
+        return table;
+    }
+
+    private static boolean isDeterministic(CompiledRule[] rules) {
+        for (CompiledRule rule : rules) {
+            if (!rule.isDeterministic()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rules in evaluation order, regular expressions being indexed by their literal prefix.
+     */
+    private static final class Routing {
+
+        private final int[] order;
+        private final int[] ranks;
+        private final PrefixTrie trie;
+
+        private Routing(CompiledRule[] rules, int[] order, LiteralTable literals) {
+            this.order = order;
+            this.ranks = new int[order.length];
+
+            PrefixTrie.Builder builder = PrefixTrie.builder();
+            for (int position = 0; position < order.length; position++) {
+                ranks[order[position]] = position;
+                // Route templates are matched by the segment tree, literals are looked up in their table
+                CompiledRule rule = rules[order[position]];
+                if (rule.getRouteTemplate() == null && (literals == null || !isIndexed(literals, rule))) {
+                    builder.add(rules[order[position]].getLiteralPrefix(), position);
+                }
+            }
+            this.trie = builder.build();
+        }
+
+        private static boolean isIndexed(LiteralTable literals, CompiledRule rule) {
+            return rule.getLiteral() != null && literals.get(rule.getLiteral()) == rule.getPosition();
+        }
+    }
+}
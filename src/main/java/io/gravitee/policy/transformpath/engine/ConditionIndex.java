@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.policy.transformpath.configuration.HeaderCondition;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dispatch table of the method, header and host conditions of a rule set, giving the rules a request
+ * is eligible to before any pattern is evaluated.
+ *
+ * Rules are indexed by method in an {@link EnumMap}, and for each header having conditions, by the
+ * value the header must have in a hash map: a request costs one lookup per method and header, each
+ * removing the rules it does not satisfy from the eligible ones.
+ *
+ * @author GraviteeSource Team
+ */
+final class ConditionIndex {
+
+    private final BitSet anyMethod;
+    private final EnumMap<HttpMethod, BitSet> byMethod;
+    private final Dimension[] dimensions;
+
+    private ConditionIndex(BitSet anyMethod, EnumMap<HttpMethod, BitSet> byMethod, Dimension[] dimensions) {
+        this.anyMethod = anyMethod;
+        this.byMethod = byMethod;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * @param rules the rules of the rule set.
+     * @return the dispatch table, or {@code null} if no rule has a condition.
+     */
+    static ConditionIndex build(CompiledRule[] rules) {
+        BitSet anyMethod = new BitSet(rules.length);
+        EnumMap<HttpMethod, BitSet> byMethod = new EnumMap<>(HttpMethod.class);
+        Map<String, Dimension.Builder> dimensions = new LinkedHashMap<>();
+        boolean conditional = false;
+
+        for (CompiledRule rule : rules) {
+            PathChange pathChange = rule.getPathChange();
+            int position = rule.getPosition();
+
+            if (pathChange.getMethods() == null || pathChange.getMethods().isEmpty()) {
+                anyMethod.set(position);
+            } else {
+                conditional = true;
+                for (HttpMethod method : pathChange.getMethods()) {
+                    byMethod.computeIfAbsent(method, key -> new BitSet(rules.length)).set(position);
+                }
+            }
+
+            if (pathChange.getHeaders() != null) {
+                for (HeaderCondition header : pathChange.getHeaders()) {
+                    if (header.getName() != null && !header.getName().isEmpty()) {
+                        conditional = true;
+                        dimensions.computeIfAbsent(header.getName().toLowerCase(Locale.ROOT),
+                                name -> new Dimension.Builder(header.getName(), false))
+                                .add(position, header.getValue());
+                    }
+                }
+            }
+
+            if (pathChange.getHost() != null && !pathChange.getHost().isEmpty()) {
+                conditional = true;
+                // Host conditions are kept apart from any header condition on the Host header, as values are normalised
+                dimensions.computeIfAbsent("", name -> new Dimension.Builder(HttpHeaders.HOST, true))
+                        .add(position, normaliseHost(pathChange.getHost()));
+            }
+        }
+
+        if (!conditional) {
+            return null;
+        }
+
+        for (BitSet methodRules : byMethod.values()) {
+            methodRules.or(anyMethod);
+        }
+
+        List<Dimension> built = new ArrayList<>();
+        for (Dimension.Builder builder : dimensions.values()) {
+            built.add(builder.build());
+        }
+        return new ConditionIndex(anyMethod, byMethod.isEmpty() ? null : byMethod,
+                built.toArray(new Dimension[built.size()]));
+    }
+
+    /**
+     * @param request the request to rewrite.
+     * @return the positions of the rules whose conditions the request satisfies.
+     */
+    BitSet eligible(Request request) {
+        BitSet methodRules = (byMethod == null || request.method() == null) ? null : byMethod.get(request.method());
+        BitSet eligible = (BitSet) ((methodRules == null) ? anyMethod : methodRules).clone();
+
+        HttpHeaders headers = request.headers();
+        for (Dimension dimension : dimensions) {
+            String value = (headers == null) ? null : headers.getFirst(dimension.header);
+            if (value != null && dimension.host) {
+                value = normaliseHost(value);
+            }
+            eligible.andNot(dimension.unsatisfied(value));
+        }
+
+        return eligible;
+    }
+
+    /**
+     * @return the host, lower case and without port.
+     */
+    static String normaliseHost(String host) {
+        int colon = host.lastIndexOf(':');
+        if (colon >= 0 && host.indexOf(']', colon) < 0 && (host.charAt(0) != '[' || host.charAt(colon - 1) == ']')) {
+            host = host.substring(0, colon);
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The conditions on one header.
+     */
+    private static final class Dimension {
+
+        private final String header;
+        private final boolean host;
+
+        /**
+         * The rules having a condition on the header, unsatisfied when it is absent.
+         */
+        private final BitSet constrained;
+
+        /**
+         * The rules not satisfied by a value required by no rule.
+         */
+        private final BitSet otherValue;
+
+        /**
+         * The rules not satisfied by each value required by a rule.
+         */
+        private final Map<String, BitSet> byValue;
+
+        private Dimension(String header, boolean host, BitSet constrained, BitSet otherValue, Map<String, BitSet> byValue) {
+            this.header = header;
+            this.host = host;
+            this.constrained = constrained;
+            this.otherValue = otherValue;
+            this.byValue = byValue;
+        }
+
+        private BitSet unsatisfied(String value) {
+            if (value == null) {
+                return constrained;
+            }
+            BitSet rules = byValue.get(value);
+            return (rules == null) ? otherValue : rules;
+        }
+
+        private static final class Builder {
+
+            private final String header;
+            private final boolean host;
+            private final Map<Integer, Set<String>> values = new LinkedHashMap<>();
+
+            private Builder(String header, boolean host) {
+                this.header = header;
+                this.host = host;
+            }
+
+            private void add(int position, String value) {
+                Set<String> required = values.computeIfAbsent(position, key -> new HashSet<>());
+                if (value != null) {
+                    required.add(value);
+                }
+            }
+
+            private Dimension build() {
+                BitSet constrained = new BitSet();
+                BitSet otherValue = new BitSet();
+                Map<String, BitSet> satisfied = new HashMap<>();
+
+                for (Map.Entry<Integer, Set<String>> entry : values.entrySet()) {
+                    constrained.set(entry.getKey());
+                    if (!entry.getValue().isEmpty()) {
+                        // A presence condition is satisfied by any value, several values by none
+                        otherValue.set(entry.getKey());
+                        if (entry.getValue().size() == 1) {
+                            satisfied.computeIfAbsent(entry.getValue().iterator().next(), key -> new BitSet())
+                                    .set(entry.getKey());
+                        }
+                    }
+                }
+
+                Map<String, BitSet> byValue = new HashMap<>();
+                for (Map.Entry<String, BitSet> entry : satisfied.entrySet()) {
+                    BitSet unsatisfied = (BitSet) otherValue.clone();
+                    unsatisfied.andNot(entry.getValue());
+                    byValue.put(entry.getKey(), unsatisfied);
+                }
+
+                return new Dimension(header, host, constrained, otherValue, byValue);
+            }
+        }
+    }
+}
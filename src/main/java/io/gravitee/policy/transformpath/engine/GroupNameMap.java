@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.MatchResult;
+
+/**
+ * Read-only {@link Map} view of the named capture groups of a match, exposed to templates as
+ * {@code #groupName}. Values are read from the match on access, nothing is copied upfront.
+ *
+ * @author GraviteeSource Team
+ */
+final class GroupNameMap extends AbstractMap<String, String> {
+
+    private final NamedGroups namedGroups;
+    private final MatchResult result;
+
+    GroupNameMap(NamedGroups namedGroups, MatchResult result) {
+        this.namedGroups = namedGroups;
+        this.result = result;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = namedGroups.indexOf((String) key);
+        return (index < 0) ? null : result.group(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && namedGroups.positionOf((String) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return namedGroups.size();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+
+                    private int position;
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < namedGroups.size();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = position++;
+                        return new SimpleImmutableEntry<>(
+                                namedGroups.name(current), result.group(namedGroups.index(current)));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return namedGroups.size();
+            }
+        };
+    }
+}
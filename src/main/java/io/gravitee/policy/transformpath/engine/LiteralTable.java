@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+/**
+ * Open addressing hash table from literal paths to an int, such as the position of a rule.
+ *
+ * Keys are probed linearly in power of two sized arrays holding their hash alongside, so that most
+ * probes are resolved without comparing characters. Lookups accept any {@link CharSequence}, such as
+ * a {@link SubPath}, and allocate nothing.
+ *
+ * @author GraviteeSource Team
+ */
+public final class LiteralTable {
+
+    /**
+     * Value returned for the paths absent from the table.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Estimated size of an object header and of an array header, and of a reference, on a 64-bit JVM
+     * with compressed references.
+     */
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final int[] values;
+    private final int mask;
+    private int size;
+
+    /**
+     * @param expectedSize the number of paths to be added, the table being sized to keep a load factor of 0.75 at most.
+     */
+    LiteralTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize + expectedSize / 3 + 1) - 1) << 1;
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Add a path, unless already present: the first value added for a path is kept.
+     *
+     * @return {@code true} if the path has been added.
+     */
+    boolean put(String key, int value) {
+        if (size >= keys.length - keys.length / 4) {
+            throw new IllegalStateException("Literal table is full: " + size + " paths");
+        }
+
+        int hash = key.hashCode();
+        for (int idx = spread(hash) & mask; ; idx = (idx + 1) & mask) {
+            if (keys[idx] == null) {
+                keys[idx] = key;
+                hashes[idx] = hash;
+                values[idx] = value;
+                size++;
+                return true;
+            }
+            if (hashes[idx] == hash && keys[idx].equals(key)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @param path the path to look up.
+     * @return the value of the path, or {@link #NOT_FOUND}.
+     */
+    int get(CharSequence path) {
+        int hash = hash(path);
+        for (int idx = spread(hash) & mask; keys[idx] != null; idx = (idx + 1) & mask) {
+            if (hashes[idx] == hash && keys[idx].contentEquals(path)) {
+                return values[idx];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @return the number of paths in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots of the table.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return the estimated number of bytes retained by the table, including its paths.
+     */
+    public long footprint() {
+        long footprint = OBJECT_HEADER + 3L * REFERENCE + 8
+                + align(ARRAY_HEADER + (long) keys.length * REFERENCE)
+                + 2 * align(ARRAY_HEADER + (long) keys.length * 4);
+        for (String key : keys) {
+            if (key != null) {
+                footprint += footprint(key);
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * @return the estimated number of bytes retained by a string.
+     */
+    static long footprint(String value) {
+        return align(OBJECT_HEADER + REFERENCE + 4) + align(ARRAY_HEADER + 2L * value.length());
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * @return the hash of the path, the one of the equivalent {@link String}.
+     */
+    private static int hash(CharSequence path) {
+        if (path instanceof String || path instanceof SubPath) {
+            return path.hashCode();
+        }
+
+        int h = 0;
+        for (int idx = 0; idx < path.length(); idx++) {
+            h = 31 * h + path.charAt(idx);
+        }
+        return h;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.Arrays;
+
+/**
+ * Immutable table resolving the named capture groups of a pattern to their group index.
+ *
+ * @author GraviteeSource Team
+ */
+public final class NamedGroups {
+
+    static final NamedGroups NONE = new NamedGroups(new String[0], new int[0]);
+
+    private final String[] names;
+    private final int[] indexes;
+
+    /**
+     * @param names the group names, sorted in natural order.
+     * @param indexes the group index of each name.
+     */
+    NamedGroups(String[] names, int[] indexes) {
+        this.names = names;
+        this.indexes = indexes;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int position) {
+        return names[position];
+    }
+
+    public int index(int position) {
+        return indexes[position];
+    }
+
+    /**
+     * @param index the index of a capture group.
+     * @return {@code true} if the group has a name.
+     */
+    boolean hasIndex(int index) {
+        for (int idx : indexes) {
+            if (idx == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param name a group name.
+     * @return the position of the name in this table, or a negative value if unknown.
+     */
+    public int positionOf(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    /**
+     * @param name a group name.
+     * @return the group index of the name, or {@code -1} if the pattern defines no such group.
+     */
+    public int indexOf(String name) {
+        int position = positionOf(name);
+        return (position < 0) ? -1 : indexes[position];
+    }
+}
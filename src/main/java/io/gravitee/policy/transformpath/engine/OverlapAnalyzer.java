@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.engine.regex.LinearRegex;
+
+/**
+ * Decides whether two rules can match a same path, to know which rules may be evaluated in any order.
+ *
+ * The analysis is conservative: rules are only reported as disjoint when it can be proven, from
+ * their literal prefixes, their length bounds, or by exploring the product of their automata.
+ * Instances are not thread-safe.
+ *
+ * @author GraviteeSource Team
+ */
+public final class OverlapAnalyzer {
+
+    /**
+     * Maximum number of product states explored to prove two patterns disjoint.
+     */
+    static final int MAX_PRODUCT_STATES = 4096;
+
+    /**
+     * Maximum number of pairs of rules compared by exploring their automata, to bound the analysis of large rule sets.
+     */
+    static final int MAX_AUTOMATON_PAIRS = 20000;
+
+    public enum Overlap {
+        /**
+         * Neither literal prefix is a prefix of the other.
+         */
+        DISJOINT_PREFIX,
+        /**
+         * The length ranges of the matched paths do not intersect.
+         */
+        DISJOINT_LENGTH,
+        /**
+         * The intersection of the patterns automata is empty.
+         */
+        DISJOINT_AUTOMATON,
+        /**
+         * No proof of disjointness has been found.
+         */
+        MAY_OVERLAP;
+
+        public boolean isDisjoint() {
+            return this != MAY_OVERLAP;
+        }
+    }
+
+    private final CompiledRule[] rules;
+    private final LinearRegex[] automata;
+    private final boolean[] unsupported;
+    private int automatonPairs;
+
+    OverlapAnalyzer(CompiledRule[] rules) {
+        this.rules = rules;
+        this.automata = new LinearRegex[rules.length];
+        this.unsupported = new boolean[rules.length];
+    }
+
+    /**
+     * @param ruleSet the rules to analyze.
+     */
+    public OverlapAnalyzer(CompiledRuleSet ruleSet) {
+        this(ruleSet.getRules());
+    }
+
+    /**
+     * @param first the index of the first rule.
+     * @param second the index of the second rule.
+     * @return how the rules were proven disjoint, or {@link Overlap#MAY_OVERLAP}.
+     */
+    public Overlap analyze(int first, int second) {
+        String firstPrefix = rules[first].getLiteralPrefix();
+        String secondPrefix = rules[second].getLiteralPrefix();
+        if (!firstPrefix.startsWith(secondPrefix) && !secondPrefix.startsWith(firstPrefix)) {
+            return Overlap.DISJOINT_PREFIX;
+        }
+
+        Prefilter firstPrefilter = rules[first].getPrefilter();
+        Prefilter secondPrefilter = rules[second].getPrefilter();
+        if (firstPrefilter.getMaxLength() < secondPrefilter.getMinLength()
+                || secondPrefilter.getMaxLength() < firstPrefilter.getMinLength()) {
+            return Overlap.DISJOINT_LENGTH;
+        }
+
+        LinearRegex firstAutomaton = automaton(first);
+        LinearRegex secondAutomaton = automaton(second);
+        if (firstAutomaton != null && secondAutomaton != null && automatonPairs++ < MAX_AUTOMATON_PAIRS
+                && LinearRegex.disjoint(firstAutomaton, secondAutomaton, MAX_PRODUCT_STATES)) {
+            return Overlap.DISJOINT_AUTOMATON;
+        }
+
+        return Overlap.MAY_OVERLAP;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @return the automaton of the rule, compiled on first use, or {@code null} if its pattern is not supported.
+     */
+    LinearRegex automaton(int rule) {
+        if (automata[rule] == null && !unsupported[rule]) {
+            try {
+                automata[rule] = LinearRegex.compile(rules[rule].getPattern());
+            } catch (IllegalArgumentException iae) {
+                // Not supported by the automaton engine, only the other proofs apply
+                unsupported[rule] = true;
+            }
+        }
+        return automata[rule];
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.util.MultiValueMap;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Query parameters set or removed by a rule, once rendered for a given path.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ParameterChanges {
+
+    private final String[] names;
+    private final String[] values;
+
+    ParameterChanges(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the value of the parameter, or {@code null} if the parameter is removed.
+     */
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the position of the given parameter in the changes, or -1 if it is left unchanged.
+     */
+    int indexOf(Object name) {
+        for (int idx = 0; idx < names.length; idx++) {
+            if (names[idx].equals(name)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the changes of both, those of {@code second} prevailing, or {@code null} if both are {@code null}.
+     */
+    public static ParameterChanges combine(ParameterChanges first, ParameterChanges second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+
+        Map<String, String> values = new LinkedHashMap<>();
+        for (ParameterChanges changes : Arrays.asList(first, second)) {
+            for (int idx = 0; idx < changes.size(); idx++) {
+                values.put(changes.getName(idx), changes.getValue(idx));
+            }
+        }
+        return new ParameterChanges(values.keySet().toArray(new String[values.size()]),
+                values.values().toArray(new String[values.size()]));
+    }
+
+    /**
+     * @param parameters the parameters of the request, or {@code null} if it has none.
+     * @return a view of the parameters with these changes applied, the parameters being copied
+     *         only if the view is modified.
+     */
+    public MultiValueMap<String, String> applyTo(MultiValueMap<String, String> parameters) {
+        return new ParameterOverlay(parameters, this);
+    }
+
+    /**
+     * @param query the raw query of the request, without the question mark, or {@code null} if it has none.
+     * @return the query with these changes applied: the parameters left unchanged keep their original raw form,
+     *         a parameter set takes the place of its first occurrence, or is appended if the query does not have it.
+     */
+    public String applyToQuery(String query) {
+        StringBuilder builder = new StringBuilder();
+        boolean[] written = new boolean[names.length];
+
+        int length = (query == null) ? 0 : query.length();
+        int start = 0;
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            if (end > start) {
+                int separator = query.indexOf('=', start);
+                String name = decode(query.substring(start, (separator < 0 || separator > end) ? end : separator));
+                int index = indexOf(name);
+                if (index < 0) {
+                    append(builder, query, start, end);
+                } else if (!written[index] && values[index] != null) {
+                    append(builder, index);
+                    written[index] = true;
+                }
+            }
+            start = end + 1;
+        }
+
+        for (int idx = 0; idx < names.length; idx++) {
+            if (!written[idx] && values[idx] != null) {
+                append(builder, idx);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String query, int start, int end) {
+        if (builder.length() != 0) {
+            builder.append('&');
+        }
+        builder.append(query, start, end);
+    }
+
+    private void append(StringBuilder builder, int index) {
+        if (builder.length() != 0) {
+            builder.append('&');
+        }
+        builder.append(encode(names[index])).append('=').append(encode(values[index]));
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (IllegalArgumentException iae) {
+            // Malformed escape sequence, compared as is
+            return value;
+        } catch (UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
+}
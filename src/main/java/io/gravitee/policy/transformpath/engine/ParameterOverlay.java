@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.common.util.MultiValueMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * {@link MultiValueMap} view of the parameters of a request with {@link ParameterChanges} applied.
+ *
+ * Reads go to the changes first, then to the original parameters, nothing is copied upfront. The
+ * first modification copies the resulting parameters, the view then behaving as a regular map.
+ *
+ * @author GraviteeSource Team
+ */
+final class ParameterOverlay extends AbstractMap<String, List<String>> implements MultiValueMap<String, String> {
+
+    private final MultiValueMap<String, String> parameters;
+    private final ParameterChanges changes;
+
+    private MultiValueMap<String, String> copy;
+
+    ParameterOverlay(MultiValueMap<String, String> parameters, ParameterChanges changes) {
+        this.parameters = parameters;
+        this.changes = changes;
+    }
+
+    @Override
+    public List<String> get(Object key) {
+        if (copy != null) {
+            return copy.get(key);
+        }
+
+        int index = changes.indexOf(key);
+        if (index >= 0) {
+            String value = changes.getValue(index);
+            return (value == null) ? null : Collections.singletonList(value);
+        }
+        return (parameters == null) ? null : parameters.get(key);
+    }
+
+    @Override
+    public String getFirst(String key) {
+        List<String> values = get(key);
+        return (values == null || values.isEmpty()) ? null : values.get(0);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (copy != null) {
+            return copy.containsKey(key);
+        }
+
+        int index = changes.indexOf(key);
+        if (index >= 0) {
+            return changes.getValue(index) != null;
+        }
+        return parameters != null && parameters.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        if (copy != null) {
+            return copy.size();
+        }
+
+        int size = (parameters == null) ? 0 : parameters.size();
+        for (int idx = 0; idx < changes.size(); idx++) {
+            boolean present = parameters != null && parameters.containsKey(changes.getName(idx));
+            boolean kept = changes.getValue(idx) != null;
+            if (present != kept) {
+                size += kept ? 1 : -1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        if (copy != null) {
+            return copy.entrySet();
+        }
+
+        return new AbstractSet<Entry<String, List<String>>>() {
+            @Override
+            public Iterator<Entry<String, List<String>>> iterator() {
+                return new OverlayIterator();
+            }
+
+            @Override
+            public int size() {
+                return ParameterOverlay.this.size();
+            }
+        };
+    }
+
+    @Override
+    public List<String> put(String key, List<String> value) {
+        return copy().put(key, value);
+    }
+
+    @Override
+    public List<String> remove(Object key) {
+        return copy().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        copy().clear();
+    }
+
+    @Override
+    public void add(String key, String value) {
+        copy().add(key, value);
+    }
+
+    @Override
+    public void set(String key, String value) {
+        copy().set(key, value);
+    }
+
+    @Override
+    public void setAll(Map<String, String> values) {
+        copy().setAll(values);
+    }
+
+    @Override
+    public Map<String, String> toSingleValueMap() {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Entry<String, List<String>> entry : entrySet()) {
+            values.put(entry.getKey(), entry.getValue().isEmpty() ? null : entry.getValue().get(0));
+        }
+        return values;
+    }
+
+    private MultiValueMap<String, String> copy() {
+        if (copy == null) {
+            MultiValueMap<String, String> values = new LinkedMultiValueMap<>();
+            for (Entry<String, List<String>> entry : entrySet()) {
+                values.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            copy = values;
+        }
+        return copy;
+    }
+
+    /**
+     * Iterates over the unchanged original parameters, then over the parameters set by the changes.
+     */
+    private final class OverlayIterator implements Iterator<Entry<String, List<String>>> {
+
+        private final Iterator<Entry<String, List<String>>> original = (parameters == null) ?
+                Collections.emptyIterator() : parameters.entrySet().iterator();
+
+        private int change;
+        private Entry<String, List<String>> next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (original.hasNext()) {
+                    Entry<String, List<String>> entry = original.next();
+                    if (changes.indexOf(entry.getKey()) < 0) {
+                        next = new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+                    }
+                } else if (change < changes.size()) {
+                    int current = change++;
+                    if (changes.getValue(current) != null) {
+                        next = new SimpleImmutableEntry<>(changes.getName(current),
+                                Collections.singletonList(changes.getValue(current)));
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<String, List<String>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, List<String>> current = next;
+            next = null;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.gateway.api.expression.TemplateEngine;
+import io.gravitee.policy.transformpath.configuration.ParameterChange;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The query parameter changes of a rule, their values parsed as templates.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ParameterTemplate {
+
+    private final String[] names;
+    private final PathTemplate[] values;
+    private final boolean expression;
+    private final boolean usesGroups;
+    private final boolean usesGroupNames;
+
+    private ParameterTemplate(String[] names, PathTemplate[] values) {
+        this.names = names;
+        this.values = values;
+
+        boolean hasExpression = false;
+        boolean groups = false;
+        boolean groupNames = false;
+        for (PathTemplate value : values) {
+            if (value != null) {
+                hasExpression |= value.isExpression();
+                groups |= value.usesGroups();
+                groupNames |= value.usesGroupNames();
+            }
+        }
+        this.expression = hasExpression;
+        this.usesGroups = groups;
+        this.usesGroupNames = groupNames;
+    }
+
+    /**
+     * @param changes the configured parameter changes, a later change of a same parameter overriding earlier ones.
+     * @param groupCount the number of capture groups of the rule pattern.
+     * @return the parsed parameter changes, or {@code null} if there is none.
+     */
+    static ParameterTemplate compile(List<ParameterChange> changes, int groupCount) {
+        if (changes == null || changes.isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> values = new LinkedHashMap<>();
+        for (ParameterChange change : changes) {
+            if (change.getName() != null && !change.getName().isEmpty()) {
+                values.put(change.getName(), change.getValue());
+            }
+        }
+        if (values.isEmpty()) {
+            return null;
+        }
+
+        String[] names = new String[values.size()];
+        PathTemplate[] templates = new PathTemplate[values.size()];
+        int idx = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            names[idx] = entry.getKey();
+            templates[idx] = (entry.getValue() == null) ? null : PathTemplate.compileValue(entry.getValue(), groupCount);
+            idx++;
+        }
+
+        return new ParameterTemplate(names, templates);
+    }
+
+    /**
+     * Render the parameter values for the given match.
+     *
+     * @param match the match of the rule owning these changes.
+     * @param templateEngine the template engine used to evaluate expressions, if any.
+     * @return the rendered changes.
+     */
+    public ParameterChanges render(RuleMatch match, TemplateEngine templateEngine) {
+        String[] rendered = new String[values.length];
+        for (int idx = 0; idx < values.length; idx++) {
+            if (values[idx] != null) {
+                rendered[idx] = values[idx].render(match, templateEngine);
+            }
+        }
+        return new ParameterChanges(names, rendered);
+    }
+
+    /**
+     * @return {@code true} if rendering a value requires the template engine.
+     */
+    public boolean isExpression() {
+        return expression;
+    }
+
+    /**
+     * @return {@code true} if a value expression reads the {@code #group} variable.
+     */
+    public boolean usesGroups() {
+        return usesGroups;
+    }
+
+    /**
+     * @return {@code true} if a value expression reads the {@code #groupName} variable.
+     */
+    public boolean usesGroupNames() {
+        return usesGroupNames;
+    }
+
+    /**
+     * @see PathTemplate#readsGroup(int, NamedGroups)
+     */
+    boolean readsGroup(int group, NamedGroups namedGroups) {
+        for (PathTemplate value : values) {
+            if (value != null && value.readsGroup(group, namedGroups)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
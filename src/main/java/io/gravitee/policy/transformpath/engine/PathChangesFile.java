@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.configuration.ValidationMode;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Path changes loaded from a JSON file rather than from the configuration, reloaded when the file is modified.
+ *
+ * The file is checked, parsed and compiled by a background thread, the new rule set replacing the previous one
+ * in a single reference swap: requests being processed keep the rule set they started with, the following ones
+ * use the new one, and no request ever waits for a compilation. A file that cannot be loaded leaves the previous
+ * rule set in place.
+ *
+ * The file stops being reloaded once closed, or once the configuration it was loaded for has been garbage collected.
+ *
+ * @author GraviteeSource Team
+ */
+public final class PathChangesFile implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PathChangesFile.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final TypeReference<List<PathChange>> PATH_CHANGES = new TypeReference<List<PathChange>>() { };
+
+    private static final ScheduledExecutorService RELOADER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transform-path-reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final TransformPathPolicyConfiguration options;
+    private final WeakReference<TransformPathPolicyConfiguration> owner;
+    private final Consumer<CompiledRuleSet> listener;
+    private final AtomicReference<CompiledRuleSet> ruleSet = new AtomicReference<>(CompiledRuleSet.EMPTY);
+    private final ScheduledFuture<?> reloading;
+    private FileTime lastModified;
+
+    /**
+     * Load the path changes file of the configuration, and schedule its reloading if the configuration
+     * defines a reload interval.
+     *
+     * @param configuration the policy configuration, providing the file and the compilation options.
+     * @param listener called with every rule set loaded from the file.
+     * @throws IllegalArgumentException if the file cannot be loaded and the validation mode is {@link ValidationMode#STRICT}.
+     */
+    public PathChangesFile(TransformPathPolicyConfiguration configuration, Consumer<CompiledRuleSet> listener) {
+        this.file = path(configuration.getPathChangesFile());
+        // Keep the options only, the configuration itself is not retained by the reloading thread
+        this.options = options(configuration);
+        this.owner = new WeakReference<>(configuration);
+        this.listener = listener;
+
+        try {
+            load();
+        } catch (IOException | IllegalArgumentException ex) {
+            if (options.getValidation() == ValidationMode.STRICT) {
+                throw new IllegalArgumentException("Unable to load path changes from " + file, ex);
+            }
+            LOGGER.warn("Unable to load path changes from {}", file, ex);
+        }
+
+        int interval = configuration.getReloadInterval();
+        this.reloading = (interval > 0) ?
+                RELOADER.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.SECONDS) : null;
+    }
+
+    /**
+     * @return the rule set compiled from the last successfully loaded version of the file.
+     */
+    public CompiledRuleSet current() {
+        return ruleSet.get();
+    }
+
+    /**
+     * @return the normalised path of the file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param file a path changes file, as configured.
+     * @return the normalised path of the file, for configurations naming the same file differently to share it.
+     */
+    public static Path path(String file) {
+        return Paths.get(file).normalize();
+    }
+
+    /**
+     * @param file the normalised path of a file.
+     * @return the last modification time of the file, or {@code null} if it cannot be read.
+     */
+    static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the file again if it has been modified since last loaded, keeping the current rule set if it cannot be.
+     */
+    void reload() {
+        // The API has been undeployed
+        if (owner.get() == null) {
+            close();
+            return;
+        }
+
+        try {
+            load();
+        } catch (IOException | IllegalArgumentException | IllegalStateException ex) {
+            LOGGER.warn("Unable to reload path changes from {}, keeping the previous ones", file, ex);
+        }
+    }
+
+    private void load() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        if (modified.equals(lastModified)) {
+            return;
+        }
+        // A broken version of the file is reported once, not at every check
+        lastModified = modified;
+
+        List<PathChange> pathChanges = MAPPER.readValue(file.toFile(), PATH_CHANGES);
+        CompiledRuleSet compiled = CompiledRuleSet.compile(pathChanges, options);
+        RuleSetCache.validate(options.getValidation(), compiled);
+
+        ruleSet.set(compiled);
+        listener.accept(compiled);
+        LOGGER.info("Loaded {} path changes from {}", pathChanges.size(), file);
+    }
+
+    /**
+     * Stop reloading the file.
+     */
+    @Override
+    public void close() {
+        if (reloading != null) {
+            reloading.cancel(false);
+        }
+    }
+
+    private static TransformPathPolicyConfiguration options(TransformPathPolicyConfiguration configuration) {
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setPathChanges(null);
+        options.setPathMappings(configuration.getPathMappings());
+        options.setCacheSize(configuration.getCacheSize());
+        options.setRegexEngine(configuration.getRegexEngine());
+        options.setMatchStepLimit(configuration.getMatchStepLimit());
+        options.setMetricsEnabled(configuration.isMetricsEnabled());
+        options.setAdaptiveOrderInterval(configuration.getAdaptiveOrderInterval());
+        options.setMaxIterations(configuration.getMaxIterations());
+        options.setValidation(configuration.getValidation());
+        return options;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The literal path mappings of a configuration, each path being rewritten to a fixed path.
+ *
+ * Paths are held by a {@link LiteralTable} whose values index the array of their targets, targets
+ * shared by several paths being stored once.
+ *
+ * @author GraviteeSource Team
+ */
+final class PathMappings {
+
+    private final LiteralTable table;
+    private final String[] targets;
+
+    private PathMappings(LiteralTable table, String[] targets) {
+        this.table = table;
+        this.targets = targets;
+    }
+
+    /**
+     * @param mappings the target path of each literal path.
+     * @return the compiled mappings, or {@code null} if there is none.
+     */
+    static PathMappings build(Map<String, String> mappings) {
+        if (mappings == null || mappings.isEmpty()) {
+            return null;
+        }
+
+        LiteralTable table = new LiteralTable(mappings.size());
+        Map<String, Integer> indexes = new HashMap<>();
+        String[] targets = new String[mappings.size()];
+
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            if (mapping.getKey() == null || mapping.getValue() == null) {
+                continue;
+            }
+
+            // Rendered paths always start with a slash
+            String target = mapping.getValue().startsWith("/") ? mapping.getValue() : '/' + mapping.getValue();
+            Integer index = indexes.get(target);
+            if (index == null) {
+                index = indexes.size();
+                indexes.put(target, index);
+                targets[index] = target;
+            }
+            table.put(mapping.getKey(), index);
+        }
+
+        String[] distinct = new String[indexes.size()];
+        System.arraycopy(targets, 0, distinct, 0, distinct.length);
+        return new PathMappings(table, distinct);
+    }
+
+    /**
+     * @return the path the given one is mapped to, or {@code null} if it is not mapped.
+     */
+    String map(CharSequence path) {
+        int index = table.get(path);
+        return (index == LiteralTable.NOT_FOUND) ? null : targets[index];
+    }
+
+    LiteralTable getTable() {
+        return table;
+    }
+
+    int size() {
+        return table.size();
+    }
+
+    /**
+     * @return the estimated number of bytes retained by the mappings, including their paths and targets.
+     */
+    long footprint() {
+        long footprint = table.footprint() + 16 + 4L * targets.length;
+        for (String target : targets) {
+            footprint += LiteralTable.footprint(target);
+        }
+        return footprint;
+    }
+}
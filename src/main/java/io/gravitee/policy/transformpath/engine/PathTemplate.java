@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.gateway.api.expression.TemplateEngine;
+import io.gravitee.policy.transformpath.interning.Interner;
+import io.gravitee.policy.transformpath.interning.Interners;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A target path template parsed into segments.
+ *
+ * Literal text and the {@code {#group[n]}} / {@code {#groupName['name']}} references are rendered
+ * directly from the match, only the other expressions are handed over to the template engine.
+ *
+ * @author GraviteeSource Team
+ */
+public final class PathTemplate {
+
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\s*#group\\s*\\[\\s*(\\d+)\\s*]\\s*");
+    private static final Pattern GROUP_NAME_REFERENCE =
+            Pattern.compile("\\s*#groupName\\s*\\[\\s*(?:'([^']*)'|\"([^\"]*)\")\\s*]\\s*");
+
+    /**
+     * Any use of the {@code #group} / {@code #groupName} variables within an expression.
+     */
+    private static final Pattern GROUP_VARIABLE = Pattern.compile("#group(?![\\w$])");
+    private static final Pattern GROUP_NAME_VARIABLE = Pattern.compile("#groupName(?![\\w$])");
+
+    private static final Interner<String, PathTemplate> TEMPLATES = Interners.create("pathTemplates", String::length);
+
+    /**
+     * Estimated length of a captured value, used to size the rendering buffer.
+     */
+    private static final int GROUP_LENGTH_ESTIMATE = 16;
+
+    private final String source;
+    private final Segment[] segments;
+    private final boolean path;
+    private final boolean malformed;
+    private final boolean expression;
+    private final boolean usesGroups;
+    private final boolean usesGroupNames;
+    private final int lengthEstimate;
+
+    private PathTemplate(String source, Segment[] segments, boolean path) {
+        this(source, segments, path, false);
+    }
+
+    private PathTemplate(String source, Segment[] segments, boolean path, boolean malformed) {
+        this.source = source;
+        this.segments = segments;
+        this.path = path;
+        this.malformed = malformed;
+
+        boolean hasExpression = false;
+        boolean groups = false;
+        boolean groupNames = false;
+        int estimate = 0;
+        for (Segment segment : segments) {
+            hasExpression |= segment instanceof ExpressionSegment;
+            if (segment instanceof ExpressionSegment && ((ExpressionSegment) segment).expression != null) {
+                String text = ((ExpressionSegment) segment).expression;
+                groups |= GROUP_VARIABLE.matcher(text).find();
+                groupNames |= GROUP_NAME_VARIABLE.matcher(text).find();
+            }
+            estimate += (segment instanceof LiteralSegment) ?
+                    ((LiteralSegment) segment).text.length() : GROUP_LENGTH_ESTIMATE;
+        }
+        this.expression = hasExpression;
+        this.usesGroups = groups;
+        this.usesGroupNames = groupNames;
+        this.lengthEstimate = estimate;
+    }
+
+    /**
+     * Parse a target path template.
+     *
+     * @param source the template, as configured in the path change.
+     * @param groupCount the number of capture groups of the rule pattern.
+     * @return the parsed template.
+     */
+    public static PathTemplate compile(String source, int groupCount) {
+        return compile(source, groupCount, true);
+    }
+
+    /**
+     * Parse a template rendering a value other than a path, such as a query parameter value,
+     * which is not given a leading slash.
+     *
+     * @param source the template, as configured.
+     * @param groupCount the number of capture groups of the rule pattern.
+     * @return the parsed template.
+     */
+    public static PathTemplate compileValue(String source, int groupCount) {
+        return compile(source, groupCount, false);
+    }
+
+    private static PathTemplate compile(String source, int groupCount, boolean path) {
+        if (source == null) {
+            return new PathTemplate(null, new Segment[] { new ExpressionSegment(null) }, path);
+        }
+
+        // Templates are immutable, and shared with the other rules using the same one
+        String key = (path ? "path:" : "value:") + groupCount + ":" + source;
+        return TEMPLATES.intern(key, k -> parse(source, groupCount, path));
+    }
+
+    private static PathTemplate parse(String source, int groupCount, boolean path) {
+        List<Segment> segments = new ArrayList<>();
+        int length = source.length();
+
+        if (length == 0) {
+            return new PathTemplate(source, new Segment[] { new LiteralSegment(path ? "/" : "") }, path);
+        }
+        int idx = 0;
+
+        while (idx < length) {
+            int start = source.indexOf('{', idx);
+            if (start < 0) {
+                segments.add(new LiteralSegment(source.substring(idx)));
+                break;
+            }
+
+            int end = findExpressionEnd(source, start);
+            if (end < 0) {
+                // Let the template engine report the malformed template, as it always did
+                return new PathTemplate(source, new Segment[] { new ExpressionSegment(source) }, path, true);
+            }
+
+            if (start > idx) {
+                segments.add(new LiteralSegment(source.substring(idx, start)));
+            }
+            segments.add(expressionSegment(source.substring(start + 1, end), groupCount));
+            idx = end + 1;
+        }
+
+        // Guarantee the leading slash once for all when the template starts with literal text
+        if (path && segments.get(0) instanceof LiteralSegment) {
+            String text = ((LiteralSegment) segments.get(0)).text;
+            if (text.charAt(0) != '/') {
+                segments.set(0, new LiteralSegment('/' + text));
+            }
+        }
+
+        return new PathTemplate(source, segments.toArray(new Segment[segments.size()]), path);
+    }
+
+    /**
+     * Render the template for the given match.
+     *
+     * @param match the match of the rule owning this template.
+     * @param templateEngine the template engine used to evaluate expressions, if any.
+     * @return the rendered path, always starting with a slash, or the rendered value.
+     */
+    public String render(RuleMatch match, TemplateEngine templateEngine) {
+        if (segments.length == 1 && segments[0] instanceof LiteralSegment) {
+            return ((LiteralSegment) segments[0]).text;
+        }
+
+        StringBuilder builder = new StringBuilder(lengthEstimate + 1);
+        for (Segment segment : segments) {
+            segment.render(builder, match, templateEngine);
+        }
+
+        if (path && (builder.length() == 0 || builder.charAt(0) != '/')) {
+            builder.insert(0, '/');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return {@code true} if rendering this template requires the template engine.
+     */
+    public boolean isExpression() {
+        return expression;
+    }
+
+    /**
+     * @return {@code true} if the template is plain literal text, rendered the same whatever the match.
+     */
+    public boolean isLiteral() {
+        for (Segment segment : segments) {
+            if (!(segment instanceof LiteralSegment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the braces of the template are not balanced, or enclose an empty expression,
+     *         the whole template being then handed over to the template engine.
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * @return {@code true} if an expression evaluated by the template engine reads the {@code #group} variable.
+     */
+    public boolean usesGroups() {
+        return usesGroups;
+    }
+
+    /**
+     * @return {@code true} if an expression evaluated by the template engine reads the {@code #groupName} variable.
+     */
+    public boolean usesGroupNames() {
+        return usesGroupNames;
+    }
+
+    /**
+     * @param group the index of a capture group of the rule pattern, {@code 1} for the first one.
+     * @param namedGroups the named capture groups of the rule pattern.
+     * @return {@code true} if rendering the template may read the value of the group.
+     */
+    boolean readsGroup(int group, NamedGroups namedGroups) {
+        if (usesGroups || (usesGroupNames && namedGroups.hasIndex(group))) {
+            return true;
+        }
+        for (Segment segment : segments) {
+            if ((segment instanceof GroupSegment && ((GroupSegment) segment).group == group)
+                    || (segment instanceof GroupNameSegment && namedGroups.indexOf(((GroupNameSegment) segment).name) == group)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    private static Segment expressionSegment(String expression, int groupCount) {
+        Matcher matcher = GROUP_REFERENCE.matcher(expression);
+        if (matcher.matches()) {
+            try {
+                int index = Integer.parseInt(matcher.group(1));
+                if (index < groupCount) {
+                    return new GroupSegment(index + 1);
+                }
+            } catch (NumberFormatException nfe) {
+                // Out of range, let the template engine deal with it
+            }
+        }
+
+        matcher = GROUP_NAME_REFERENCE.matcher(expression);
+        if (matcher.matches()) {
+            return new GroupNameSegment((matcher.group(1) != null) ? matcher.group(1) : matcher.group(2));
+        }
+
+        return new ExpressionSegment('{' + expression + '}');
+    }
+
+    /**
+     * @return the index of the brace closing the expression opened at the given index, or -1.
+     */
+    private static int findExpressionEnd(String source, int start) {
+        int depth = 0;
+        char quote = 0;
+
+        for (int idx = start; idx < source.length(); idx++) {
+            char c = source.charAt(idx);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return (idx == start + 1) ? -1 : idx;
+            }
+        }
+
+        return -1;
+    }
+
+    private static abstract class Segment {
+
+        abstract void render(StringBuilder builder, RuleMatch match, TemplateEngine templateEngine);
+    }
+
+    private static final class LiteralSegment extends Segment {
+
+        private final String text;
+
+        private LiteralSegment(String text) {
+            this.text = text;
+        }
+
+        @Override
+        void render(StringBuilder builder, RuleMatch match, TemplateEngine templateEngine) {
+            builder.append(text);
+        }
+    }
+
+    private static final class GroupSegment extends Segment {
+
+        private final int group;
+
+        private GroupSegment(int group) {
+            this.group = group;
+        }
+
+        @Override
+        void render(StringBuilder builder, RuleMatch match, TemplateEngine templateEngine) {
+            String value = match.group(group);
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+    }
+
+    private static final class GroupNameSegment extends Segment {
+
+        private final String name;
+
+        private GroupNameSegment(String name) {
+            this.name = name;
+        }
+
+        @Override
+        void render(StringBuilder builder, RuleMatch match, TemplateEngine templateEngine) {
+            String value = match.group(name);
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+    }
+
+    private static final class ExpressionSegment extends Segment {
+
+        private final String expression;
+
+        private ExpressionSegment(String expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        void render(StringBuilder builder, RuleMatch match, TemplateEngine templateEngine) {
+            String value = templateEngine.convert(expression);
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,646 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Static analysis of regular expression sources, used to build the structures that let
+ * {@link CompiledRuleSet} skip rules which cannot match a given path.
+ *
+ * Every result is conservative: when the analyzer does not fully understand a construct it
+ * gives up on that part of the pattern rather than risk rejecting a path the regex would accept.
+ *
+ * @author GraviteeSource Team
+ */
+public final class PatternAnalyzer {
+
+    private static final String METACHARACTERS = "\\[](){}.*+?^$|";
+
+    private PatternAnalyzer() {
+    }
+
+    /**
+     * Compute the literal text every input matched by the given pattern must start with.
+     *
+     * @param pattern the pattern to analyze.
+     * @return the required literal prefix, or an empty string when none can be proven.
+     */
+    public static String literalPrefix(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return "";
+        }
+
+        String regex = pattern.pattern();
+        if (hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int length = regex.length();
+        int idx = (length > 0 && regex.charAt(0) == '^') ? 1 : 0;
+
+        while (idx < length) {
+            char c = regex.charAt(idx);
+            char literal;
+            int next;
+
+            if (c == '\\') {
+                if (idx + 1 >= length || Character.isLetterOrDigit(regex.charAt(idx + 1))) {
+                    // \d, \w, \Q, back-references... are not plain literals
+                    break;
+                }
+                literal = regex.charAt(idx + 1);
+                next = idx + 2;
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+                next = idx + 1;
+            }
+
+            // A quantified literal may be absent or repeated
+            if (next < length && isQuantifier(regex.charAt(next))) {
+                break;
+            }
+
+            prefix.append(literal);
+            idx = next;
+        }
+
+        return prefix.toString();
+    }
+
+    /**
+     * Compute the only input matched by the given pattern, if it is made of literal text only.
+     *
+     * @param pattern the pattern to analyze.
+     * @return the text matched by the pattern, or {@code null} if the pattern is not a plain literal.
+     */
+    public static String literal(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return null;
+        }
+
+        String regex = pattern.pattern();
+        StringBuilder literal = new StringBuilder(regex.length());
+        int length = regex.length();
+        int idx = (length > 0 && regex.charAt(0) == '^') ? 1 : 0;
+        // Patterns are matched against the whole path, a trailing anchor changes nothing
+        if (length > idx && regex.charAt(length - 1) == '$' && (length < 2 || regex.charAt(length - 2) != '\\')) {
+            length--;
+        }
+
+        while (idx < length) {
+            char c = regex.charAt(idx);
+            if (c == '\\') {
+                if (idx + 1 >= length || Character.isLetterOrDigit(regex.charAt(idx + 1))) {
+                    return null;
+                }
+                literal.append(regex.charAt(idx + 1));
+                idx += 2;
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+                idx++;
+            }
+        }
+
+        return literal.toString();
+    }
+
+    /**
+     * Compute the bounds on the length of the inputs matched by the given pattern, and the
+     * literals every one of them contains besides its {@link #literalPrefix(Pattern) literal prefix}.
+     *
+     * @param pattern the pattern to analyze.
+     * @return the prefilter of the pattern, accepting everything if the pattern is not understood.
+     */
+    public static Prefilter prefilter(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return Prefilter.ACCEPT_ALL;
+        }
+
+        Fragment fragment;
+        try {
+            fragment = new Parser(pattern.pattern()).parse();
+        } catch (UnsupportedOperationException uoe) {
+            return Prefilter.ACCEPT_ALL;
+        }
+
+        // Literals included in the prefix are already checked while walking the prefix trie
+        String prefix = literalPrefix(pattern);
+        List<String> literals = new ArrayList<>();
+        for (String literal : fragment.literals) {
+            if (!prefix.contains(literal) && !literals.contains(literal)) {
+                literals.add(literal);
+            }
+        }
+
+        return new Prefilter(fragment.min, fragment.max, literals.toArray(new String[literals.size()]));
+    }
+
+    /**
+     * Resolve the index of every named capture group of the given pattern.
+     *
+     * @param pattern the pattern to analyze.
+     * @return the named group table of the pattern.
+     */
+    public static NamedGroups namedGroups(Pattern pattern) {
+        if ((pattern.flags() & Pattern.LITERAL) != 0) {
+            return NamedGroups.NONE;
+        }
+
+        String regex = pattern.pattern();
+        Map<String, Integer> groups = new TreeMap<>();
+        int length = regex.length();
+        int groupIndex = 0;
+
+        for (int idx = 0; idx < length; idx++) {
+            char c = regex.charAt(idx);
+            if (c == '\\') {
+                idx = skipEscape(regex, idx);
+            } else if (c == '[') {
+                idx = skipCharacterClass(regex, idx);
+            } else if (c == '(') {
+                if (idx + 1 < length && regex.charAt(idx + 1) != '?') {
+                    groupIndex++;
+                } else if (idx + 3 < length && regex.charAt(idx + 2) == '<'
+                        && Character.isLetter(regex.charAt(idx + 3))) {
+                    groupIndex++;
+                    int end = regex.indexOf('>', idx + 3);
+                    if (end > 0) {
+                        groups.put(regex.substring(idx + 3, end), groupIndex);
+                    }
+                }
+            }
+        }
+
+        if (groups.isEmpty()) {
+            return NamedGroups.NONE;
+        }
+
+        String[] names = new String[groups.size()];
+        int[] indexes = new int[groups.size()];
+        int position = 0;
+        for (Map.Entry<String, Integer> group : groups.entrySet()) {
+            names[position] = group.getKey();
+            indexes[position] = group.getValue();
+            position++;
+        }
+
+        return new NamedGroups(names, indexes);
+    }
+
+    /**
+     * @param regex a regular expression source.
+     * @return {@code true} if the expression contains an alternation outside of any group.
+     */
+    static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        int length = regex.length();
+
+        for (int idx = 0; idx < length; idx++) {
+            char c = regex.charAt(idx);
+            switch (c) {
+                case '\\':
+                    idx = skipEscape(regex, idx);
+                    break;
+                case '[':
+                    idx = skipCharacterClass(regex, idx);
+                    break;
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    depth--;
+                    break;
+                case '|':
+                    if (depth == 0) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param regex a regular expression source.
+     * @param start the index of a backslash.
+     * @return the index of the last character of the escape sequence, including quoted sections.
+     */
+    static int skipEscape(String regex, int start) {
+        if (start + 1 < regex.length() && regex.charAt(start + 1) == 'Q') {
+            int end = regex.indexOf("\\E", start + 2);
+            return (end < 0) ? regex.length() : end + 1;
+        }
+        return start + 1;
+    }
+
+    /**
+     * @param regex a regular expression source.
+     * @param start the index of the opening bracket of a character class.
+     * @return the index of the matching closing bracket (or the last index if unterminated).
+     */
+    static int skipCharacterClass(String regex, int start) {
+        int length = regex.length();
+        int idx = start + 1;
+        int depth = 1;
+
+        if (idx < length && regex.charAt(idx) == '^') {
+            idx++;
+        }
+        // A leading ']' is a literal
+        if (idx < length && regex.charAt(idx) == ']') {
+            idx++;
+        }
+
+        for (; idx < length; idx++) {
+            char c = regex.charAt(idx);
+            if (c == '\\') {
+                idx++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return idx;
+            }
+        }
+
+        return length - 1;
+    }
+
+    private static boolean isQuantifier(char c) {
+        return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    private static int add(int left, int right) {
+        long sum = (long) left + right;
+        return (sum >= Prefilter.UNBOUNDED) ? Prefilter.UNBOUNDED : (int) sum;
+    }
+
+    private static int multiply(int value, int times) {
+        if (value == 0 || times == 0) {
+            return 0;
+        }
+        long product = (long) value * times;
+        return (product >= Prefilter.UNBOUNDED) ? Prefilter.UNBOUNDED : (int) product;
+    }
+
+    /**
+     * Length bounds and required literals of a part of a pattern.
+     */
+    private static final class Fragment {
+
+        private static final Fragment EMPTY = new Fragment(0, 0, Collections.emptyList());
+
+        private final int min;
+        private final int max;
+        private final List<String> literals;
+
+        private Fragment(int min, int max, List<String> literals) {
+            this.min = min;
+            this.max = max;
+            this.literals = literals;
+        }
+    }
+
+    /**
+     * Recursive descent over a pattern source. Any construct it does not know how to bound
+     * (inline flags, grapheme clusters...) makes it throw {@link UnsupportedOperationException}.
+     */
+    private static final class Parser {
+
+        /**
+         * Bounds of a single character, which may be a surrogate pair.
+         */
+        private static final Fragment CHARACTER = new Fragment(1, 2, Collections.emptyList());
+
+        private final String regex;
+        private int pos;
+
+        /**
+         * The literal character of the last parsed atom, if it is a plain literal.
+         */
+        private int literal;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private Fragment parse() {
+            Fragment fragment = alternation();
+            if (pos < regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+            return fragment;
+        }
+
+        private Fragment alternation() {
+            Fragment fragment = sequence();
+
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                Fragment alternative = sequence();
+                fragment = new Fragment(Math.min(fragment.min, alternative.min),
+                        Math.max(fragment.max, alternative.max), Collections.emptyList());
+            }
+
+            return fragment;
+        }
+
+        private Fragment sequence() {
+            int min = 0;
+            int max = 0;
+            List<String> literals = new ArrayList<>();
+            StringBuilder run = new StringBuilder();
+
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+
+                if (regex.startsWith("\\Q", pos)) {
+                    // Quoted characters are literals, a quantifier only applies to the last one
+                    int end = regex.indexOf("\\E", pos + 2);
+                    String quoted = regex.substring(pos + 2, (end < 0) ? regex.length() : end);
+                    pos = (end < 0) ? regex.length() : end + 2;
+                    if (quoted.isEmpty()) {
+                        continue;
+                    }
+                    run.append(quoted, 0, quoted.length() - 1);
+                    min = add(min, quoted.length() - 1);
+                    max = add(max, quoted.length() - 1);
+
+                    int[] quantifier = quantifier();
+                    if (quantifier[0] == 1 && quantifier[1] == 1) {
+                        run.append(quoted.charAt(quoted.length() - 1));
+                    } else {
+                        flush(run, literals);
+                    }
+                    min = add(min, quantifier[0]);
+                    max = add(max, quantifier[1]);
+                    continue;
+                }
+
+                Fragment atom = atom();
+                int atomLiteral = literal;
+                int[] quantifier = quantifier();
+
+                if (atomLiteral >= 0 && quantifier[0] == 1 && quantifier[1] == 1) {
+                    run.append((char) atomLiteral);
+                } else {
+                    flush(run, literals);
+                    if (quantifier[0] > 0) {
+                        literals.addAll(atom.literals);
+                    }
+                }
+
+                min = add(min, multiply(atom.min, quantifier[0]));
+                max = add(max, multiply(atom.max, quantifier[1]));
+            }
+
+            flush(run, literals);
+            return new Fragment(min, max, literals);
+        }
+
+        private Fragment atom() {
+            literal = -1;
+            char c = regex.charAt(pos++);
+
+            switch (c) {
+                case '(':
+                    Fragment group = group();
+                    literal = -1;
+                    return group;
+                case '[':
+                    int end = skipCharacterClass(regex, pos - 1);
+                    if (regex.charAt(end) != ']') {
+                        throw new UnsupportedOperationException();
+                    }
+                    pos = end + 1;
+                    return CHARACTER;
+                case '.':
+                    return CHARACTER;
+                case '^':
+                case '$':
+                    return Fragment.EMPTY;
+                case '\\':
+                    return escape();
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw new UnsupportedOperationException();
+                default:
+                    if (Character.isHighSurrogate(c) && pos < regex.length()
+                            && Character.isLowSurrogate(regex.charAt(pos))) {
+                        // A quantifier applies to the whole code point
+                        pos++;
+                        return new Fragment(2, 2, Collections.emptyList());
+                    }
+                    literal = c;
+                    return new Fragment(1, 1, Collections.emptyList());
+            }
+        }
+
+        private Fragment group() {
+            boolean lookaround = false;
+
+            if (regex.startsWith("?", pos)) {
+                if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+                    pos += 2;
+                } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+                    pos += 2;
+                    lookaround = true;
+                } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                    pos += 3;
+                    lookaround = true;
+                } else if (regex.startsWith("?<", pos)) {
+                    int end = regex.indexOf('>', pos);
+                    if (end < 0) {
+                        throw new UnsupportedOperationException();
+                    }
+                    pos = end + 1;
+                } else {
+                    // Inline flags change how the following characters are matched
+                    throw new UnsupportedOperationException();
+                }
+            }
+
+            Fragment inner = alternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new UnsupportedOperationException();
+            }
+            pos++;
+
+            return lookaround ? Fragment.EMPTY : inner;
+        }
+
+        private Fragment escape() {
+            if (pos >= regex.length()) {
+                throw new UnsupportedOperationException();
+            }
+
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case 't':
+                    literal = '\t';
+                    return new Fragment(1, 1, Collections.emptyList());
+                case 'n':
+                    literal = '\n';
+                    return new Fragment(1, 1, Collections.emptyList());
+                case 'r':
+                    literal = '\r';
+                    return new Fragment(1, 1, Collections.emptyList());
+                case 'f':
+                    literal = '\f';
+                    return new Fragment(1, 1, Collections.emptyList());
+                case 'd': case 'D': case 'w': case 'W': case 's': case 'S':
+                case 'h': case 'H': case 'v': case 'V':
+                    return CHARACTER;
+                case 'b': case 'B': case 'A': case 'G': case 'z': case 'Z':
+                    return Fragment.EMPTY;
+                case 'R':
+                    return CHARACTER;
+                case 'p': case 'P':
+                    if (regex.startsWith("{", pos)) {
+                        int end = regex.indexOf('}', pos);
+                        if (end < 0) {
+                            throw new UnsupportedOperationException();
+                        }
+                        pos = end + 1;
+                    } else {
+                        pos++;
+                    }
+                    return CHARACTER;
+                case 'x':
+                    if (regex.startsWith("{", pos)) {
+                        int end = regex.indexOf('}', pos);
+                        if (end < 0) {
+                            throw new UnsupportedOperationException();
+                        }
+                        pos = end + 1;
+                    } else {
+                        pos += 2;
+                    }
+                    return CHARACTER;
+                case 'u':
+                    pos += 4;
+                    return CHARACTER;
+                case 'c':
+                    pos++;
+                    return CHARACTER;
+                case '0':
+                    while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                        pos++;
+                    }
+                    return CHARACTER;
+                case 'a':
+                case 'e':
+                    return CHARACTER;
+                case 'k':
+                    int end = regex.indexOf('>', pos);
+                    if (end < 0) {
+                        throw new UnsupportedOperationException();
+                    }
+                    pos = end + 1;
+                    return new Fragment(0, Prefilter.UNBOUNDED, Collections.emptyList());
+                default:
+                    if (c >= '1' && c <= '9') {
+                        // Back-reference
+                        while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                            pos++;
+                        }
+                        return new Fragment(0, Prefilter.UNBOUNDED, Collections.emptyList());
+                    }
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedOperationException();
+                    }
+                    literal = c;
+                    return new Fragment(1, 1, Collections.emptyList());
+            }
+        }
+
+        /**
+         * @return the minimum and maximum repetitions of the quantifier at the current position.
+         */
+        private int[] quantifier() {
+            int[] bounds;
+
+            if (pos >= regex.length()) {
+                return new int[] { 1, 1 };
+            }
+
+            switch (regex.charAt(pos)) {
+                case '?':
+                    bounds = new int[] { 0, 1 };
+                    pos++;
+                    break;
+                case '*':
+                    bounds = new int[] { 0, Prefilter.UNBOUNDED };
+                    pos++;
+                    break;
+                case '+':
+                    bounds = new int[] { 1, Prefilter.UNBOUNDED };
+                    pos++;
+                    break;
+                case '{':
+                    int end = regex.indexOf('}', pos);
+                    if (end < 0) {
+                        throw new UnsupportedOperationException();
+                    }
+                    String[] range = regex.substring(pos + 1, end).split(",", -1);
+                    try {
+                        int min = Integer.parseInt(range[0].trim());
+                        int max = (range.length == 1) ? min :
+                                range[1].trim().isEmpty() ? Prefilter.UNBOUNDED : Integer.parseInt(range[1].trim());
+                        bounds = new int[] { min, max };
+                    } catch (NumberFormatException nfe) {
+                        throw new UnsupportedOperationException();
+                    }
+                    pos = end + 1;
+                    break;
+                default:
+                    return new int[] { 1, 1 };
+            }
+
+            // Reluctant and possessive variants match the same inputs
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+
+            return bounds;
+        }
+
+        private static void flush(StringBuilder run, List<String> literals) {
+            if (run.length() > 1) {
+                literals.add(run.toString());
+            }
+            run.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+/**
+ * Cheap checks a path must pass before the regular expression of a rule is evaluated: bounds on
+ * the length of the matched text and literals that must appear in it.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Prefilter {
+
+    /**
+     * Length used for patterns able to match inputs of any length.
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    static final Prefilter ACCEPT_ALL = new Prefilter(0, UNBOUNDED, new String[0]);
+
+    private final int minLength;
+    private final int maxLength;
+    private final String[] requiredLiterals;
+
+    Prefilter(int minLength, int maxLength, String[] requiredLiterals) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.requiredLiterals = requiredLiterals;
+    }
+
+    /**
+     * @param path the path to test.
+     * @return {@code false} if the pattern cannot match the path, {@code true} if it may.
+     */
+    public boolean accepts(CharSequence path) {
+        int length = path.length();
+        if (length < minLength || length > maxLength) {
+            return false;
+        }
+
+        for (String literal : requiredLiterals) {
+            if (indexOf(path, literal) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @return the maximum length of a matching input, or {@link #UNBOUNDED}.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public String[] getRequiredLiterals() {
+        return requiredLiterals.clone();
+    }
+
+    private static int indexOf(CharSequence path, String literal) {
+        if (path instanceof String) {
+            return ((String) path).indexOf(literal);
+        }
+        if (path instanceof SubPath) {
+            return ((SubPath) path).indexOf(literal, 0);
+        }
+
+        int last = path.length() - literal.length();
+        for (int start = 0; start <= last; start++) {
+            int idx = 0;
+            while (idx < literal.length() && path.charAt(start + idx) == literal.charAt(idx)) {
+                idx++;
+            }
+            if (idx == literal.length()) {
+                return start;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable character trie indexing rules by their required literal prefix.
+ *
+ * Each node stores the ordered list of every rule whose prefix is a prefix of the node's
+ * path from the root, so a single walk over the input yields the complete, already ordered,
+ * list of candidate rules without any merging or allocation.
+ *
+ * @author GraviteeSource Team
+ */
+final class PrefixTrie {
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final Node root;
+
+    private PrefixTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param input the path to route.
+     * @return the positions, in ascending order, of the rules whose literal prefix matches the input.
+     */
+    int[] candidates(CharSequence input) {
+        Node node = root;
+        int length = input.length();
+
+        for (int idx = 0; idx < length; idx++) {
+            Node child = node.child(input.charAt(idx));
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+
+        return node.candidates;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+
+        private final MutableNode root = new MutableNode();
+
+        /**
+         * Register a rule. Rules must be added in ascending position order.
+         */
+        Builder add(String prefix, int position) {
+            MutableNode node = root;
+            for (int idx = 0; idx < prefix.length(); idx++) {
+                node = node.children.computeIfAbsent(prefix.charAt(idx), c -> new MutableNode());
+            }
+            node.rules = append(node.rules, position);
+            return this;
+        }
+
+        PrefixTrie build() {
+            return new PrefixTrie(root.freeze(NO_RULES));
+        }
+    }
+
+    private static final class MutableNode {
+
+        private final Map<Character, MutableNode> children = new TreeMap<>();
+
+        private int[] rules = NO_RULES;
+
+        private Node freeze(int[] inherited) {
+            int[] candidates = (rules.length == 0) ? inherited : merge(inherited, rules);
+
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int idx = 0;
+            for (Map.Entry<Character, MutableNode> entry : children.entrySet()) {
+                keys[idx] = entry.getKey();
+                nodes[idx] = entry.getValue().freeze(candidates);
+                idx++;
+            }
+
+            return new Node(keys, nodes, candidates);
+        }
+    }
+
+    private static final class Node {
+
+        private final char[] keys;
+        private final Node[] children;
+        private final int[] candidates;
+
+        private Node(char[] keys, Node[] children, int[] candidates) {
+            this.keys = keys;
+            this.children = children;
+            this.candidates = candidates;
+        }
+
+        private Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return (idx < 0) ? null : children[idx];
+        }
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static int[] merge(int[] left, int[] right) {
+        int[] result = new int[left.length + right.length];
+        int l = 0, r = 0, idx = 0;
+
+        while (l < left.length && r < right.length) {
+            result[idx++] = (left[l] <= right[r]) ? left[l++] : right[r++];
+        }
+        while (l < left.length) {
+            result[idx++] = left[l++];
+        }
+        while (r < right.length) {
+            result[idx++] = right[r++];
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.regex.MatchResult;
+
+/**
+ * Matches a path against the pattern of a rule, with one of the supported regular expression engines.
+ *
+ * @author GraviteeSource Team
+ */
+interface RegexMatcher {
+
+    /**
+     * @param path the path to match, entirely.
+     * @return the match and its capture groups, or {@code null} if the path does not match.
+     */
+    MatchResult match(CharSequence path);
+}
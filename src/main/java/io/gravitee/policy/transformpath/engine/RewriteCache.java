@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of rewrite results, keyed by the path being rewritten.
+ *
+ * Entries are spread over independently locked LRU stripes so concurrent requests rarely contend.
+ * It must only be used for rule sets whose target paths do not depend on anything but the path,
+ * see {@link PathTemplate#isExpression()} and {@link ParameterTemplate#isExpression()}.
+ *
+ * Paths are looked up by their characters, whatever their {@link CharSequence} implementation, so a
+ * {@link SubPath} finds the entry cached for the equivalent {@link String} without being copied.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RewriteCache {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RewriteCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+
+        int stripeCount = Integer.highestOneBit(Math.min(MAX_STRIPES, maximumSize));
+        int stripeSize = (maximumSize + stripeCount - 1) / stripeCount;
+
+        this.stripes = new Stripe[stripeCount];
+        for (int idx = 0; idx < stripeCount; idx++) {
+            stripes[idx] = new Stripe(stripeSize);
+        }
+        this.mask = stripeCount - 1;
+    }
+
+    /**
+     * @param path the path to rewrite, either a {@link String} or a {@link SubPath}.
+     * @return the cached rewrite, {@link Rewrite#NONE} if no rule matches the path, or {@code null} if unknown.
+     */
+    public Rewrite get(CharSequence path) {
+        Key key = new Key(path);
+        Stripe stripe = stripeFor(key);
+        Rewrite rewrite;
+        synchronized (stripe) {
+            rewrite = stripe.get(key);
+        }
+
+        if (rewrite == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return rewrite;
+    }
+
+    public void put(String path, Rewrite rewrite) {
+        Key key = new Key(path);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, rewrite);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(Key key) {
+        int hash = key.hash;
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    /**
+     * The cached outcome of a rewrite.
+     */
+    public static final class Rewrite {
+
+        /**
+         * Marker of a path matched by no rule.
+         */
+        public static final Rewrite NONE = new Rewrite(null);
+
+        private final String path;
+        private final int ruleIndex;
+        private final ParameterChanges parameters;
+
+        public Rewrite(String path) {
+            this(path, -1);
+        }
+
+        /**
+         * @param ruleIndex the index of the rule which produced the path.
+         */
+        public Rewrite(String path, int ruleIndex) {
+            this(path, ruleIndex, null);
+        }
+
+        /**
+         * @param parameters the query parameter changes produced along with the path, if any.
+         */
+        public Rewrite(String path, int ruleIndex, ParameterChanges parameters) {
+            this.path = path;
+            this.ruleIndex = ruleIndex;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return the rewritten path, or {@code null} for {@link #NONE}.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the index of the rule which produced the path, or -1 if unknown.
+         */
+        public int getRuleIndex() {
+            return ruleIndex;
+        }
+
+        /**
+         * @return the query parameter changes, or {@code null} if the rule does not change any.
+         */
+        public ParameterChanges getParameters() {
+            return parameters;
+        }
+
+        /**
+         * @param next the rewrite of the path produced by this one, by a later stage.
+         * @return the combined rewrite, the parameter changes of the later stage prevailing.
+         */
+        public Rewrite then(Rewrite next) {
+            return new Rewrite(next.path, next.ruleIndex, ParameterChanges.combine(parameters, next.parameters));
+        }
+    }
+
+    /**
+     * A path compared by its characters, the cached ones being strings and the looked up ones possibly sub-paths.
+     */
+    private static final class Key {
+
+        private final CharSequence path;
+        private final int hash;
+
+        private Key(CharSequence path) {
+            this.path = path;
+            this.hash = hash(path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            int length = path.length();
+            if (other.hash != hash || other.path.length() != length) {
+                return false;
+            }
+            for (int idx = 0; idx < length; idx++) {
+                if (other.path.charAt(idx) != path.charAt(idx)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the hash of the path, the one of the equivalent {@link String}.
+         */
+        private static int hash(CharSequence path) {
+            if (path instanceof String || path instanceof SubPath) {
+                return path.hashCode();
+            }
+
+            int h = 0;
+            for (int idx = 0; idx < path.length(); idx++) {
+                h = 31 * h + path.charAt(idx);
+            }
+            return h;
+        }
+    }
+
+    private final class Stripe extends LinkedHashMap<Key, Rewrite> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+
+        private Stripe(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Rewrite> eldest) {
+            if (size() > maximumSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import java.util.Map;
+import java.util.regex.MatchResult;
+
+/**
+ * The outcome of a successful {@link CompiledRuleSet#match(CharSequence)}: the winning rule along
+ * with the already evaluated match result, so capture groups can be read without matching again.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RuleMatch {
+
+    private final CompiledRule rule;
+    private final MatchResult result;
+
+    RuleMatch(CompiledRule rule, MatchResult result) {
+        this.rule = rule;
+        this.result = result;
+    }
+
+    public CompiledRule getRule() {
+        return rule;
+    }
+
+    /**
+     * @return the position of the matching rule in the configured list of path changes.
+     */
+    public int getIndex() {
+        return rule.getIndex();
+    }
+
+    public int groupCount() {
+        return result.groupCount();
+    }
+
+    /**
+     * @param group the index of the capture group, {@code 0} being the whole match.
+     * @return the captured value, or {@code null} if the group did not participate in the match.
+     */
+    public String group(int group) {
+        return result.group(group);
+    }
+
+    /**
+     * @param name the name of the capture group.
+     * @return the captured value, or {@code null} if the group did not participate in the match.
+     */
+    public String group(String name) {
+        int index = rule.getNamedGroups().indexOf(name);
+        return (index < 0) ? null : result.group(index);
+    }
+
+    /**
+     * @return the capture groups, the whole match excluded, as the array the {@code #group} variable always was.
+     */
+    public String[] groups() {
+        String[] groups = new String[result.groupCount()];
+        for (int idx = 0; idx < groups.length; idx++) {
+            groups[idx] = result.group(idx + 1);
+        }
+        return groups;
+    }
+
+    /**
+     * @return a read-only view of the named capture groups, backed by this match.
+     */
+    public Map<String, String> namedGroups() {
+        return new GroupNameMap(rule.getNamedGroups(), result);
+    }
+}
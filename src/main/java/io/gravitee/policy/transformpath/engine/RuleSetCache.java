@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.configuration.ValidationMode;
+import io.gravitee.policy.transformpath.metrics.MetricsRegistries;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link CompiledRuleSet} of every live policy configuration.
+ *
+ * The gateway creates a new policy instance for each request while the configuration object is
+ * shared by all of them, so compiled rules are attached to the configuration identity. Entries are
+ * weakly referenced and disappear once the API holding the configuration is undeployed.
+ *
+ * Path changes are validated once compiled, see {@link RuleSetValidator}.
+ *
+ * Configurations loading their path changes from a file are given the rule set last loaded from it,
+ * see {@link PathChangesFile}. A configuration whose file is rejected is not loaded again until the file
+ * is modified.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RuleSetCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleSetCache.class);
+
+    private static final ConcurrentMap<IdentityKey, Entry> RULE_SETS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<IdentityKey, FileEntry> FILES = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+    private RuleSetCache() {
+    }
+
+    /**
+     * @param configuration the policy configuration.
+     * @return the rule set compiled from the configuration path changes.
+     * @throws IllegalArgumentException if the path changes are invalid, see {@link ValidationMode}.
+     */
+    public static CompiledRuleSet get(TransformPathPolicyConfiguration configuration) {
+        if (configuration.getPathChangesFile() != null) {
+            return getFile(configuration).current();
+        }
+
+        List<PathChange> pathChanges = configuration.getPathChanges();
+        Entry entry = RULE_SETS.get(new IdentityKey(configuration));
+
+        // Recompile if the list of path changes has been replaced since last compilation
+        if (entry == null || entry.source != pathChanges) {
+            expungeStaleEntries();
+            try {
+                CompiledRuleSet ruleSet = CompiledRuleSet.fromConfiguration(configuration);
+                validate(configuration.getValidation(), ruleSet);
+                entry = new Entry(pathChanges, ruleSet, null);
+                register(configuration, ruleSet);
+            } catch (IllegalArgumentException iae) {
+                // Rejected once for all, rather than compiled and validated again for each request
+                entry = new Entry(pathChanges, null, iae);
+            }
+            RULE_SETS.put(new IdentityKey(configuration, QUEUE), entry);
+        }
+
+        if (entry.failure != null) {
+            throw new IllegalArgumentException(entry.failure.getMessage(), entry.failure);
+        }
+        return entry.ruleSet;
+    }
+
+    private static PathChangesFile getFile(TransformPathPolicyConfiguration configuration) {
+        Path path = PathChangesFile.path(configuration.getPathChangesFile());
+        FileEntry entry = FILES.get(new IdentityKey(configuration));
+
+        if (!isCurrent(entry, path)) {
+            synchronized (FILES) {
+                entry = FILES.get(new IdentityKey(configuration));
+                if (!isCurrent(entry, path)) {
+                    expungeStaleEntries();
+                    if (entry != null && entry.file != null) {
+                        entry.file.close();
+                    }
+                    entry = load(configuration, path);
+                    FILES.put(new IdentityKey(configuration, QUEUE), entry);
+                }
+            }
+        }
+
+        if (entry.failure != null) {
+            throw new IllegalArgumentException(entry.failure.getMessage(), entry.failure);
+        }
+        return entry.file;
+    }
+
+    private static FileEntry load(TransformPathPolicyConfiguration configuration, Path path) {
+        // Read before loading, a modification made while loading is then seen as such
+        FileTime modified = PathChangesFile.lastModified(path);
+        try {
+            // The reloading thread must not retain the configuration
+            WeakReference<TransformPathPolicyConfiguration> reference = new WeakReference<>(configuration);
+            PathChangesFile file = new PathChangesFile(configuration, ruleSet -> register(reference.get(), ruleSet));
+            return new FileEntry(path, file, null, null);
+        } catch (IllegalArgumentException iae) {
+            // Rejected until the file is modified, rather than loaded again for each request
+            return new FileEntry(path, null, iae, modified);
+        }
+    }
+
+    private static boolean isCurrent(FileEntry entry, Path path) {
+        return entry != null && entry.path.equals(path)
+                && (entry.failure == null || Objects.equals(entry.modified, PathChangesFile.lastModified(path)));
+    }
+
+    private static void register(TransformPathPolicyConfiguration configuration, CompiledRuleSet ruleSet) {
+        if (configuration != null && ruleSet.getStatistics() != null) {
+            MetricsRegistries.getRegistry().register(configuration, ruleSet.getStatistics());
+        }
+    }
+
+    static void validate(ValidationMode validation, CompiledRuleSet ruleSet) {
+        List<String> problems = RuleSetValidator.validate(ruleSet);
+        if (problems.isEmpty()) {
+            return;
+        }
+
+        if (validation == ValidationMode.STRICT) {
+            throw new IllegalArgumentException("Invalid path changes: " + String.join("; ", problems));
+        }
+        for (String problem : problems) {
+            LOGGER.warn(problem);
+        }
+    }
+
+    private static void expungeStaleEntries() {
+        Reference<?> reference;
+        while ((reference = QUEUE.poll()) != null) {
+            RULE_SETS.remove(reference);
+            FileEntry entry = FILES.remove(reference);
+            if (entry != null && entry.file != null) {
+                entry.file.close();
+            }
+        }
+    }
+
+    /**
+     * A compiled rule set, or the reason the path changes were rejected, along with the list of path changes
+     * configured when it was compiled: the compiled rule set may not keep that list, when it is empty.
+     */
+    private static final class Entry {
+
+        private final List<PathChange> source;
+        private final CompiledRuleSet ruleSet;
+        private final IllegalArgumentException failure;
+
+        private Entry(List<PathChange> source, CompiledRuleSet ruleSet, IllegalArgumentException failure) {
+            this.source = source;
+            this.ruleSet = ruleSet;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * The path changes file of a configuration, or the reason it was rejected along with its modification time
+     * at the time, {@code null} if it did not exist.
+     */
+    private static final class FileEntry {
+
+        private final Path path;
+        private final PathChangesFile file;
+        private final IllegalArgumentException failure;
+        private final FileTime modified;
+
+        private FileEntry(Path path, PathChangesFile file, IllegalArgumentException failure, FileTime modified) {
+            this.path = path;
+            this.file = file;
+            this.failure = failure;
+            this.modified = modified;
+        }
+    }
+
+    private static final class IdentityKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        private IdentityKey(Object referent) {
+            super(referent);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        private IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityKey)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((IdentityKey) obj).get();
+        }
+    }
+}
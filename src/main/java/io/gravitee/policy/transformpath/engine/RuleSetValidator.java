@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.HeaderCondition;
+import io.gravitee.policy.transformpath.configuration.ParameterChange;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the compiled path changes of a configuration for problems which would otherwise only show
+ * up at request time: references to capture groups the pattern does not define, malformed templates,
+ * patterns backtracking excessively on synthetic paths, stages skipped once the maximum number of
+ * rewrites is reached, and path changes which are never applied or redundant, see {@link ShadowAnalyzer}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RuleSetValidator {
+
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("#group\\s*\\[\\s*(\\d+)\\s*]");
+    private static final Pattern GROUP_NAME_REFERENCE =
+            Pattern.compile("#groupName\\s*\\[\\s*(?:'([^']*)'|\"([^\"]*)\")\\s*]");
+
+    /**
+     * Length of the synthetic paths the patterns are measured against.
+     */
+    static final int SYNTHETIC_LENGTH = 256;
+
+    /**
+     * Number of characters the JDK engine may read per character of a synthetic path before the
+     * pattern is reported as too costly.
+     */
+    static final int STEPS_PER_CHARACTER = 64;
+
+    private static final String[] FILLERS = { "a", "0", "/a", "a-" };
+    private static final String[] ENDINGS = { "!", "/" };
+
+    private RuleSetValidator() {
+    }
+
+    /**
+     * @param ruleSet the compiled rule set, and its following stages.
+     * @return the problems found, empty if none.
+     */
+    public static List<String> validate(CompiledRuleSet ruleSet) {
+        List<String> problems = new ArrayList<>();
+        int stages = 0;
+        for (CompiledRuleSet stage = ruleSet; stage != null; stage = stage.getNextStage()) {
+            for (CompiledRule rule : stage.getRules()) {
+                validate(rule, problems);
+            }
+            stages++;
+        }
+
+        // Reported once here rather than for each request reaching the limit
+        if (ruleSet.getMaxIterations() > 0 && stages > ruleSet.getMaxIterations()) {
+            problems.add("Path changes define " + stages + " stages but maxIterations is " + ruleSet.getMaxIterations()
+                    + ": paths rewritten by " + ruleSet.getMaxIterations() + " stages skip the remaining ones");
+        }
+
+        for (ShadowAnalyzer.Finding finding : ShadowAnalyzer.analyze(ruleSet)) {
+            problems.add(finding.toString());
+        }
+        return problems;
+    }
+
+    private static void validate(CompiledRule rule, List<String> problems) {
+        PathChange pathChange = rule.getPathChange();
+        String prefix = "Path change #" + rule.getIndex() + " (" + rule.getPattern() + "): ";
+
+        if (pathChange.getPath() == null) {
+            problems.add(prefix + "no resulting path");
+        } else {
+            validateTemplate(rule, rule.getTemplate(), "resulting path", prefix, problems);
+        }
+
+        if (pathChange.getParameters() != null) {
+            for (ParameterChange parameter : pathChange.getParameters()) {
+                if (parameter.getName() == null || parameter.getName().isEmpty()) {
+                    problems.add(prefix + "query parameter without name");
+                } else if (parameter.getValue() != null) {
+                    PathTemplate template = PathTemplate.compileValue(parameter.getValue(), groupCount(rule));
+                    validateTemplate(rule, template, "query parameter " + parameter.getName(), prefix, problems);
+                }
+            }
+        }
+
+        if (pathChange.getHeaders() != null) {
+            for (HeaderCondition header : pathChange.getHeaders()) {
+                if (header.getName() == null || header.getName().isEmpty()) {
+                    problems.add(prefix + "header condition without name, ignored");
+                }
+            }
+        }
+
+        if (!rule.isLinear() && rule.getRouteTemplate() == null) {
+            validateCost(rule, prefix, problems);
+        }
+    }
+
+    private static void validateTemplate(CompiledRule rule, PathTemplate template, String target,
+                                         String prefix, List<String> problems) {
+        if (template.isMalformed()) {
+            problems.add(prefix + "malformed " + target + " " + template.getSource());
+            return;
+        }
+
+        int groupCount = groupCount(rule);
+        Matcher matcher = GROUP_REFERENCE.matcher(template.getSource());
+        while (matcher.find()) {
+            if (matcher.group(1).length() > 9 || Integer.parseInt(matcher.group(1)) >= groupCount) {
+                problems.add(prefix + target + " references #group[" + matcher.group(1) + "] but the pattern has "
+                        + groupCount + " capture group(s)");
+            }
+        }
+
+        matcher = GROUP_NAME_REFERENCE.matcher(template.getSource());
+        while (matcher.find()) {
+            String name = (matcher.group(1) != null) ? matcher.group(1) : matcher.group(2);
+            if (rule.getNamedGroups().positionOf(name) < 0) {
+                problems.add(prefix + target + " references #groupName['" + name + "'] which the pattern does not define");
+            }
+        }
+    }
+
+    /**
+     * Match the pattern against synthetic paths close to the ones it accepts, but failing near their end,
+     * which is when a backtracking engine explores the most alternatives.
+     */
+    private static void validateCost(CompiledRule rule, String prefix, List<String> problems) {
+        String literalPrefix = rule.getLiteralPrefix();
+        int budget = SYNTHETIC_LENGTH * STEPS_PER_CHARACTER;
+
+        for (String filler : FILLERS) {
+            for (String ending : ENDINGS) {
+                StringBuilder path = new StringBuilder(SYNTHETIC_LENGTH).append(literalPrefix);
+                while (path.length() < SYNTHETIC_LENGTH - ending.length()) {
+                    path.append(filler);
+                }
+                path.append(ending);
+
+                try {
+                    rule.getPattern().matcher(new BudgetedCharSequence(path, budget)).matches();
+                } catch (BudgetedCharSequence.BudgetExceededException bee) {
+                    problems.add(prefix + "reads more than " + budget + " characters to match the " + path.length()
+                            + " characters path " + abbreviate(path) + ", consider the linear engine or a match step limit");
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int groupCount(CompiledRule rule) {
+        return rule.getPattern().matcher("").groupCount();
+    }
+
+    private static String abbreviate(CharSequence path) {
+        return (path.length() <= 32) ? path.toString() : path.subSequence(0, 32) + "...";
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.RouteTemplate;
+import io.gravitee.policy.transformpath.engine.regex.LinearMatchResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable tree of the route templates of a rule set, one level per path segment.
+ *
+ * Each node has literal children, looked up by the text of the next segment, a variable child
+ * matching any non-empty segment, and the rules whose catch-all starts at the next segment. The
+ * path is walked once, exploring the variable branch only when it may hold a rule declared before
+ * the best one found so far, so the cost depends on the number of segments rather than of rules.
+ *
+ * @author GraviteeSource Team
+ */
+final class SegmentTree {
+
+    private static final int NO_RULE = Integer.MAX_VALUE;
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final Node root;
+    private final CompiledRule[] rules;
+    private final int maxDepth;
+
+    /**
+     * For each rule, the segment index of each of its variables, in group order.
+     */
+    private final int[][] variableDepths;
+
+    private SegmentTree(Node root, CompiledRule[] rules, int[][] variableDepths, int maxDepth) {
+        this.root = root;
+        this.rules = rules;
+        this.variableDepths = variableDepths;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param rules every rule of the rule set, only those having a route template are indexed.
+     * @return the tree, or {@code null} if no rule has a route template.
+     */
+    static SegmentTree build(CompiledRule[] rules) {
+        MutableNode root = new MutableNode();
+        int[][] variableDepths = new int[rules.length][];
+        int maxDepth = 0;
+        boolean empty = true;
+
+        for (CompiledRule rule : rules) {
+            RouteTemplate template = rule.getRouteTemplate();
+            if (template == null) {
+                continue;
+            }
+            empty = false;
+
+            List<RouteTemplate.Segment> segments = template.getSegments();
+            maxDepth = Math.max(maxDepth, segments.size());
+            int[] depths = new int[segments.size()];
+            int variables = 0;
+            MutableNode node = root;
+
+            for (int depth = 0; depth < segments.size(); depth++) {
+                RouteTemplate.Segment segment = segments.get(depth);
+                switch (segment.getType()) {
+                    case LITERAL:
+                        node = node.literals.computeIfAbsent(segment.getValue(), text -> new MutableNode());
+                        break;
+                    case VARIABLE:
+                        depths[variables++] = depth;
+                        if (node.variable == null) {
+                            node.variable = new MutableNode();
+                        }
+                        node = node.variable;
+                        break;
+                    default:
+                        depths[variables++] = depth;
+                        node.catchAlls.add(rule.getPosition());
+                        node = null;
+                        break;
+                }
+            }
+
+            if (node != null) {
+                node.ends.add(rule.getPosition());
+            }
+            variableDepths[rule.getPosition()] = Arrays.copyOf(depths, variables);
+        }
+
+        return empty ? null : new SegmentTree(root.freeze(), rules, variableDepths, maxDepth);
+    }
+
+    /**
+     * @param path the path to match.
+     * @return the match of the first rule, in configuration order, whose template matches the path, or {@code null}.
+     */
+    RuleMatch match(CharSequence path) {
+        return match(path, null);
+    }
+
+    /**
+     * @param path the path to match.
+     * @param eligible the positions of the rules which may match, {@code null} for all of them.
+     * @return the match of the first eligible rule, in configuration order, whose template matches the path, or {@code null}.
+     */
+    RuleMatch match(CharSequence path, BitSet eligible) {
+        if (path.length() == 0 || path.charAt(0) != '/') {
+            return null;
+        }
+
+        Search search = new Search(path, maxDepth, eligible);
+        search.walk(root, 0, 0);
+
+        if (search.best == NO_RULE) {
+            return null;
+        }
+        return new RuleMatch(rules[search.best], captures(search.best, search.bestStarts, search.bestEnds, path));
+    }
+
+    private LinearMatchResult captures(int rule, int[] starts, int[] ends, CharSequence path) {
+        int[] depths = variableDepths[rule];
+        int[] captures = new int[(depths.length + 1) * 2];
+        captures[0] = 0;
+        captures[1] = path.length();
+        for (int group = 0; group < depths.length; group++) {
+            captures[group * 2 + 2] = starts[depths[group]];
+            captures[group * 2 + 3] = ends[depths[group]];
+        }
+        return new LinearMatchResult(path, captures);
+    }
+
+    private static final class Search {
+
+        private final CharSequence path;
+        private final BitSet eligible;
+
+        /**
+         * Boundaries of the segments walked so far, by depth.
+         */
+        private final int[] starts;
+        private final int[] ends;
+
+        private int best = NO_RULE;
+        private int[] bestStarts;
+        private int[] bestEnds;
+
+        private Search(CharSequence path, int maxDepth, BitSet eligible) {
+            this.path = path;
+            this.eligible = eligible;
+            this.starts = new int[maxDepth];
+            this.ends = new int[maxDepth];
+        }
+
+        /**
+         * @param node the node reached after walking {@code depth} segments.
+         * @param position the index of the slash starting the next segment, or the path length.
+         */
+        private void walk(Node node, int depth, int position) {
+            if (node.min >= best) {
+                return;
+            }
+
+            int length = path.length();
+            if (position == length) {
+                int end = first(node.ends);
+                if (end < best) {
+                    accept(end, depth);
+                }
+                return;
+            }
+            if (depth == starts.length) {
+                return;
+            }
+
+            int start = position + 1;
+            int end = start;
+            while (end < length && path.charAt(end) != '/') {
+                end++;
+            }
+            starts[depth] = start;
+
+            int catchAll = first(node.catchAlls);
+            if (catchAll < best) {
+                ends[depth] = length;
+                accept(catchAll, depth + 1);
+            }
+
+            ends[depth] = end;
+            Node literal = node.literal(path, start, end);
+            if (literal != null) {
+                walk(literal, depth + 1, end);
+            }
+            if (node.variable != null && end > start) {
+                // Boundaries may have been overwritten by the literal branch
+                starts[depth] = start;
+                ends[depth] = end;
+                walk(node.variable, depth + 1, end);
+            }
+        }
+
+        /**
+         * @return the first eligible rule of the given ones, or {@link #NO_RULE}.
+         */
+        private int first(int[] rules) {
+            for (int rule : rules) {
+                if (rule >= best) {
+                    break;
+                }
+                if (eligible == null || eligible.get(rule)) {
+                    return rule;
+                }
+            }
+            return NO_RULE;
+        }
+
+        private void accept(int rule, int depth) {
+            best = rule;
+            bestStarts = Arrays.copyOf(starts, depth);
+            bestEnds = Arrays.copyOf(ends, depth);
+        }
+    }
+
+    private static final class MutableNode {
+
+        private final Map<String, MutableNode> literals = new TreeMap<>();
+        private MutableNode variable;
+        private final List<Integer> ends = new ArrayList<>();
+        private final List<Integer> catchAlls = new ArrayList<>();
+
+        private Node freeze() {
+            String[] keys = new String[literals.size()];
+            Node[] children = new Node[literals.size()];
+            int[] frozenEnds = toArray(ends);
+            int[] frozenCatchAlls = toArray(catchAlls);
+            int min = Math.min((frozenEnds.length == 0) ? NO_RULE : frozenEnds[0],
+                    (frozenCatchAlls.length == 0) ? NO_RULE : frozenCatchAlls[0]);
+            int idx = 0;
+            for (Map.Entry<String, MutableNode> entry : literals.entrySet()) {
+                keys[idx] = entry.getKey();
+                children[idx] = entry.getValue().freeze();
+                min = Math.min(min, children[idx].min);
+                idx++;
+            }
+
+            Node frozenVariable = (variable == null) ? null : variable.freeze();
+            if (frozenVariable != null) {
+                min = Math.min(min, frozenVariable.min);
+            }
+
+            return new Node(keys, children, frozenVariable, frozenEnds, frozenCatchAlls, min);
+        }
+
+        private static int[] toArray(List<Integer> rules) {
+            if (rules.isEmpty()) {
+                return NO_RULES;
+            }
+            int[] array = new int[rules.size()];
+            for (int idx = 0; idx < array.length; idx++) {
+                array[idx] = rules.get(idx);
+            }
+            return array;
+        }
+    }
+
+    private static final class Node {
+
+        private final String[] keys;
+        private final Node[] children;
+        private final Node variable;
+
+        /**
+         * The rules whose template ends at this node, in ascending order.
+         */
+        private final int[] ends;
+
+        /**
+         * The rules whose catch-all starts at the next segment, in ascending order.
+         */
+        private final int[] catchAlls;
+
+        /**
+         * The first rule of this node and its descendants.
+         */
+        private final int min;
+
+        private Node(String[] keys, Node[] children, Node variable, int[] ends, int[] catchAlls, int min) {
+            this.keys = keys;
+            this.children = children;
+            this.variable = variable;
+            this.ends = ends;
+            this.catchAlls = catchAlls;
+            this.min = min;
+        }
+
+        /**
+         * @return the literal child matching the given segment of the path, without extracting it.
+         */
+        private Node literal(CharSequence path, int start, int end) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(keys[middle], path, start, end);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return children[middle];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String key, CharSequence path, int start, int end) {
+            int length = Math.min(key.length(), end - start);
+            for (int idx = 0; idx < length; idx++) {
+                int diff = key.charAt(idx) - path.charAt(start + idx);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return key.length() - (end - start);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.policy.transformpath.configuration.HeaderCondition;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.engine.regex.LinearRegex;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the path changes which are never applied, or whose removal would change nothing, as matching is first-wins.
+ *
+ * A path change is:
+ * <ul>
+ *     <li>{@link Kind#UNREACHABLE} when its pattern matches no path, or its conditions can never be met,</li>
+ *     <li>{@link Kind#SHADOWED} when an earlier path change of its stage matches every path it matches, under weaker
+ *     conditions,</li>
+ *     <li>{@link Kind#REDUNDANT} when a later path change matches every path it matches, under weaker conditions,
+ *     with the same literal resulting path, and no path change in between may match one of these paths.</li>
+ * </ul>
+ *
+ * Inclusion is proven by matching the literal path of a rule against the other one, or by exploring the product of
+ * their automata, see {@link LinearRegex#includes}. Only the rules whose literal prefix is compatible are compared.
+ * The analysis is conservative: a path change is only reported when proven.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ShadowAnalyzer {
+
+    /**
+     * Maximum number of product states explored to prove a pattern includes another one.
+     */
+    static final int MAX_PRODUCT_STATES = 4096;
+
+    /**
+     * Maximum number of pairs of rules compared by exploring their automata, to bound the analysis of large rule sets.
+     */
+    static final int MAX_AUTOMATON_PAIRS = 20000;
+
+    public enum Kind {
+        UNREACHABLE,
+        SHADOWED,
+        REDUNDANT
+    }
+
+    /**
+     * A path change found to be useless.
+     */
+    public static final class Finding {
+
+        private final Kind kind;
+        private final CompiledRule rule;
+        private final CompiledRule by;
+
+        private Finding(Kind kind, CompiledRule rule, CompiledRule by) {
+            this.kind = kind;
+            this.rule = rule;
+            this.by = by;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the index of the path change in the configured list.
+         */
+        public int getIndex() {
+            return rule.getIndex();
+        }
+
+        /**
+         * @return the index of the path change shadowing or making this one redundant, -1 if it is unreachable.
+         */
+        public int getByIndex() {
+            return (by == null) ? -1 : by.getIndex();
+        }
+
+        @Override
+        public String toString() {
+            String prefix = "Path change #" + rule.getIndex() + " (" + rule.getPattern() + "): ";
+            switch (kind) {
+                case UNREACHABLE:
+                    return prefix + "never matches, its pattern or conditions cannot be satisfied";
+                case SHADOWED:
+                    return prefix + "never applied, shadowed by path change #" + by.getIndex() + " (" + by.getPattern() + ")";
+                default:
+                    return prefix + "redundant with path change #" + by.getIndex() + " (" + by.getPattern() + ")";
+            }
+        }
+    }
+
+    private final CompiledRule[] rules;
+    private final OverlapAnalyzer overlaps;
+    private final PrefixTrie trie;
+    private int automatonPairs;
+
+    private ShadowAnalyzer(CompiledRule[] rules) {
+        this.rules = rules;
+        this.overlaps = new OverlapAnalyzer(rules);
+
+        PrefixTrie.Builder builder = PrefixTrie.builder();
+        for (CompiledRule rule : rules) {
+            builder.add(rule.getLiteralPrefix(), rule.getPosition());
+        }
+        this.trie = builder.build();
+    }
+
+    /**
+     * @param ruleSet the compiled rule set, and its following stages.
+     * @return the path changes found to be useless, in configuration order.
+     */
+    public static List<Finding> analyze(CompiledRuleSet ruleSet) {
+        List<Finding> findings = new ArrayList<>();
+        for (CompiledRuleSet stage = ruleSet; stage != null; stage = stage.getNextStage()) {
+            new ShadowAnalyzer(stage.getRules()).analyze(findings);
+        }
+        findings.sort(Comparator.comparingInt(Finding::getIndex));
+        return findings;
+    }
+
+    private void analyze(List<Finding> findings) {
+        for (CompiledRule rule : rules) {
+            if (isUnreachable(rule)) {
+                findings.add(new Finding(Kind.UNREACHABLE, rule, null));
+                continue;
+            }
+
+            // Rules whose literal prefix is a prefix of the one of this rule, the only ones proven to include it
+            String key = (rule.getLiteral() != null) ? rule.getLiteral() : rule.getLiteralPrefix();
+            int[] candidates = trie.candidates(key);
+
+            CompiledRule shadowing = null;
+            CompiledRule redundant = null;
+            for (int position : candidates) {
+                CompiledRule candidate = rules[position];
+                if (position < rule.getPosition() && shadowing == null && includes(candidate, rule)) {
+                    shadowing = candidate;
+                    break;
+                }
+                if (position > rule.getPosition() && redundant == null && isRedundant(rule, candidate)) {
+                    redundant = candidate;
+                }
+            }
+
+            if (shadowing != null) {
+                findings.add(new Finding(Kind.SHADOWED, rule, shadowing));
+            } else if (redundant != null) {
+                findings.add(new Finding(Kind.REDUNDANT, rule, redundant));
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the rule pattern is proven to match no path, or its conditions contradict each other.
+     */
+    private boolean isUnreachable(CompiledRule rule) {
+        List<HeaderCondition> headers = rule.getPathChange().getHeaders();
+        if (headers != null) {
+            for (int idx = 0; idx < headers.size(); idx++) {
+                for (int other = idx + 1; other < headers.size(); other++) {
+                    if (contradict(headers.get(idx), headers.get(other))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        // An automaton disjoint from itself matches nothing
+        LinearRegex automaton = overlaps.automaton(rule.getPosition());
+        return rule.getLiteral() == null && automaton != null
+                && LinearRegex.disjoint(automaton, automaton, MAX_PRODUCT_STATES);
+    }
+
+    /**
+     * @return {@code true} if applying the later rule to the paths of the rule gives the same result.
+     */
+    private boolean isRedundant(CompiledRule rule, CompiledRule later) {
+        if (!rule.getTemplate().isLiteral() || rule.getParameterTemplate() != null || later.getParameterTemplate() != null
+                || !rule.getPathChange().getPath().equals(later.getPathChange().getPath())
+                || !includes(later, rule)) {
+            return false;
+        }
+
+        // The paths of the rule must reach the later one
+        for (int position = rule.getPosition() + 1; position < later.getPosition(); position++) {
+            if (!overlaps.analyze(rule.getPosition(), position).isDisjoint()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the first rule is proven to apply to every request the second one applies to.
+     */
+    private boolean includes(CompiledRule first, CompiledRule second) {
+        if (!implies(second.getPathChange(), first.getPathChange())) {
+            return false;
+        }
+
+        if (second.getLiteral() != null) {
+            return first.match(second.getLiteral()) != null;
+        }
+
+        Prefilter firstPrefilter = first.getPrefilter();
+        Prefilter secondPrefilter = second.getPrefilter();
+        if (secondPrefilter.getMinLength() < firstPrefilter.getMinLength()
+                || secondPrefilter.getMaxLength() > firstPrefilter.getMaxLength()) {
+            return false;
+        }
+
+        LinearRegex firstAutomaton = overlaps.automaton(first.getPosition());
+        LinearRegex secondAutomaton = overlaps.automaton(second.getPosition());
+        return firstAutomaton != null && secondAutomaton != null && automatonPairs++ < MAX_AUTOMATON_PAIRS
+                && LinearRegex.includes(secondAutomaton, firstAutomaton, MAX_PRODUCT_STATES);
+    }
+
+    /**
+     * @return {@code true} if every request meeting the conditions of the first path change meets those of the second one.
+     */
+    private static boolean implies(PathChange first, PathChange second) {
+        List<HttpMethod> methods = second.getMethods();
+        if (methods != null && !methods.isEmpty()
+                && (first.getMethods() == null || first.getMethods().isEmpty() || !methods.containsAll(first.getMethods()))) {
+            return false;
+        }
+
+        if (second.getHeaders() != null) {
+            for (HeaderCondition header : second.getHeaders()) {
+                if (header.getName() != null && !header.getName().isEmpty() && !hasCondition(first, header)) {
+                    return false;
+                }
+            }
+        }
+
+        if (second.getHost() != null && !second.getHost().isEmpty()) {
+            return first.getHost() != null && !first.getHost().isEmpty()
+                    && ConditionIndex.normaliseHost(first.getHost()).equals(ConditionIndex.normaliseHost(second.getHost()));
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the path change has a condition at least as strict as the given one.
+     */
+    private static boolean hasCondition(PathChange pathChange, HeaderCondition condition) {
+        if (pathChange.getHeaders() == null) {
+            return false;
+        }
+        for (HeaderCondition header : pathChange.getHeaders()) {
+            if (condition.getName().equalsIgnoreCase(header.getName())
+                    && (condition.getValue() == null || condition.getValue().equals(header.getValue()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contradict(HeaderCondition first, HeaderCondition second) {
+        return first.getName() != null && !first.getName().isEmpty() && first.getName().equalsIgnoreCase(second.getName())
+                && first.getValue() != null && second.getValue() != null && !first.getValue().equals(second.getValue());
+    }
+}
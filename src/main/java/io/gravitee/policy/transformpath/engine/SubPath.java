@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+/**
+ * The part of a request path following the API context path, as a view over the request path
+ * rather than a copy of it.
+ *
+ * {@link #hashCode()} is the one of the equivalent {@link String}, but a sub-path is only equal to another
+ * sub-path with the same characters, never to a {@link String}: lookups of sub-paths among strings compare
+ * characters explicitly, see {@link RewriteCache#get(CharSequence)}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class SubPath implements CharSequence {
+
+    private final String path;
+    private final int offset;
+    private int hash;
+    private String string;
+
+    /**
+     * @param path the whole request path.
+     * @param offset the length of the context path.
+     */
+    public SubPath(String path, int offset) {
+        if (offset < 0 || offset > path.length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " out of path " + path);
+        }
+        this.path = path;
+        this.offset = offset;
+    }
+
+    @Override
+    public int length() {
+        return path.length() - offset;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return path.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return path.substring(offset + start, offset + end);
+    }
+
+    /**
+     * @return the index of the first occurrence of the given text, or -1.
+     */
+    public int indexOf(String text, int fromIndex) {
+        int idx = path.indexOf(text, offset + fromIndex);
+        return (idx < 0) ? -1 : idx - offset;
+    }
+
+    /**
+     * @return the index of the first occurrence of the given character, or -1.
+     */
+    public int indexOf(char c, int fromIndex) {
+        int idx = path.indexOf(c, offset + fromIndex);
+        return (idx < 0) ? -1 : idx - offset;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (int idx = offset; idx < path.length(); idx++) {
+                h = 31 * h + path.charAt(idx);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SubPath)) {
+            return false;
+        }
+
+        SubPath other = (SubPath) obj;
+        int length = length();
+        return other.length() == length && path.regionMatches(offset, other.path, other.offset, length);
+    }
+
+    /**
+     * @return the sub-path as a string, only copied once.
+     */
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            s = (offset == 0) ? path : path.substring(offset);
+            string = s;
+        }
+        return s;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of code points, stored as sorted, non overlapping, inclusive ranges.
+ *
+ * @author GraviteeSource Team
+ */
+final class CharRanges {
+
+    static final CharRanges NONE = new CharRanges(new int[0]);
+
+    static final CharRanges ALL = range(0, Character.MAX_CODE_POINT);
+
+    static final CharRanges DIGIT = range('0', '9');
+
+    static final CharRanges WORD = range('a', 'z').union(range('A', 'Z')).union(range('0', '9')).union(of('_'));
+
+    static final CharRanges SPACE = range('\t', '\r').union(of(' '));
+
+    static final CharRanges HORIZONTAL_SPACE = of(' ').union(of('\t')).union(of(0xA0)).union(of(0x1680))
+            .union(of(0x180E)).union(range(0x2000, 0x200A)).union(of(0x202F)).union(of(0x205F)).union(of(0x3000));
+
+    static final CharRanges VERTICAL_SPACE = range('\n', '\r').union(of(0x85)).union(range(0x2028, 0x2029));
+
+    /**
+     * Line terminators, not matched by {@code .} unless the DOTALL flag is set.
+     */
+    static final CharRanges LINE_TERMINATOR = of('\n').union(of('\r')).union(of(0x85)).union(range(0x2028, 0x2029));
+
+    static final CharRanges DOT = LINE_TERMINATOR.complement();
+
+    /**
+     * Pairs of inclusive bounds: {@code [low0, high0, low1, high1, ...]}.
+     */
+    private final int[] bounds;
+
+    private CharRanges(int[] bounds) {
+        this.bounds = bounds;
+    }
+
+    static CharRanges of(int codePoint) {
+        return range(codePoint, codePoint);
+    }
+
+    static CharRanges range(int low, int high) {
+        return new CharRanges(new int[] { low, high });
+    }
+
+    boolean contains(int codePoint) {
+        // Find the last range starting at or before the code point
+        int low = 0;
+        int high = bounds.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid * 2] <= codePoint) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && codePoint <= bounds[high * 2 + 1];
+    }
+
+    CharRanges union(CharRanges other) {
+        int[] all = Arrays.copyOf(bounds, bounds.length + other.bounds.length);
+        System.arraycopy(other.bounds, 0, all, bounds.length, other.bounds.length);
+        return normalize(all);
+    }
+
+    CharRanges intersection(CharRanges other) {
+        return complement().union(other.complement()).complement();
+    }
+
+    CharRanges complement() {
+        int[] result = new int[bounds.length + 2];
+        int size = 0;
+        int next = 0;
+
+        for (int idx = 0; idx < bounds.length; idx += 2) {
+            if (bounds[idx] > next) {
+                result[size++] = next;
+                result[size++] = bounds[idx] - 1;
+            }
+            next = bounds[idx + 1] + 1;
+        }
+        if (next <= Character.MAX_CODE_POINT) {
+            result[size++] = next;
+            result[size++] = Character.MAX_CODE_POINT;
+        }
+
+        return new CharRanges(Arrays.copyOf(result, size));
+    }
+
+    boolean isEmpty() {
+        return bounds.length == 0;
+    }
+
+    int rangeCount() {
+        return bounds.length / 2;
+    }
+
+    int low(int range) {
+        return bounds[range * 2];
+    }
+
+    int high(int range) {
+        return bounds[range * 2 + 1];
+    }
+
+    private static CharRanges normalize(int[] pairs) {
+        int count = pairs.length / 2;
+        long[] ranges = new long[count];
+        for (int idx = 0; idx < count; idx++) {
+            ranges[idx] = ((long) pairs[idx * 2] << 32) | (pairs[idx * 2 + 1] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(ranges);
+
+        int[] result = new int[pairs.length];
+        int size = 0;
+        for (long range : ranges) {
+            int low = (int) (range >>> 32);
+            int high = (int) range;
+            if (size > 0 && low <= result[size - 1] + 1) {
+                result[size - 1] = Math.max(result[size - 1], high);
+            } else {
+                result[size++] = low;
+                result[size++] = high;
+            }
+        }
+
+        return new CharRanges(Arrays.copyOf(result, size));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CharRanges && Arrays.equals(bounds, ((CharRanges) obj).bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bounds);
+    }
+}
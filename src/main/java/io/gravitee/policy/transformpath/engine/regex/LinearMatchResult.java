@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import java.util.regex.MatchResult;
+
+/**
+ * Result of a successful match of a whole input, holding the boundaries of the capture groups.
+ *
+ * @author GraviteeSource Team
+ */
+public final class LinearMatchResult implements MatchResult {
+
+    private final CharSequence input;
+    private final int[] captures;
+
+    /**
+     * @param input the matched input, groups being extracted from it only when requested.
+     * @param captures the start and end of each group, group 0 being the whole input, -1 for groups which did not match.
+     */
+    public LinearMatchResult(CharSequence input, int[] captures) {
+        this.input = input;
+        this.captures = captures;
+    }
+
+    @Override
+    public int start() {
+        return start(0);
+    }
+
+    @Override
+    public int start(int group) {
+        checkGroup(group);
+        return captures[group * 2];
+    }
+
+    @Override
+    public int end() {
+        return end(0);
+    }
+
+    @Override
+    public int end(int group) {
+        checkGroup(group);
+        return captures[group * 2 + 1];
+    }
+
+    @Override
+    public String group() {
+        return group(0);
+    }
+
+    @Override
+    public String group(int group) {
+        checkGroup(group);
+        int start = captures[group * 2];
+        int end = captures[group * 2 + 1];
+        return (start < 0 || end < 0) ? null : input.subSequence(start, end).toString();
+    }
+
+    @Override
+    public int groupCount() {
+        return captures.length / 2 - 1;
+    }
+
+    private void checkGroup(int group) {
+        if (group < 0 || group > groupCount()) {
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+    }
+}
@@ -0,0 +1,593 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression matched by simulating its automaton (Pike VM) rather than by backtracking.
+ *
+ * Every input character is processed once against the set of live threads, each thread being a
+ * position in the compiled program, so the matching cost is O(input length × program size) whatever
+ * the input. Threads are kept in priority order and a thread reaching an instruction already reached
+ * by a higher priority one is dropped: whether the input matches is what
+ * {@link java.util.regex.Matcher#matches()} would report, and so are the capture groups, except for
+ * groups inside a repeated construct, see {@link #isRepeated(int)}.
+ *
+ * Only the syntax accepted by {@link RegexParser} is supported, and no flag.
+ *
+ * @author GraviteeSource Team
+ */
+public final class LinearRegex {
+
+    private final String regex;
+    private final Program program;
+    private final int groupCount;
+    private final BitSet repeatedGroups;
+
+    private LinearRegex(String regex, Program program, int groupCount, BitSet repeatedGroups) {
+        this.regex = regex;
+        this.program = program;
+        this.groupCount = groupCount;
+        this.repeatedGroups = repeatedGroups;
+    }
+
+    /**
+     * @param pattern the pattern to compile.
+     * @return the linear time equivalent of the pattern.
+     * @throws IllegalArgumentException if the pattern uses flags or a construct which cannot be
+     * matched in linear time (back-references, look-arounds, possessive quantifiers...).
+     */
+    public static LinearRegex compile(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            throw new IllegalArgumentException("Pattern flags are not supported: " + pattern.pattern());
+        }
+        return compile(pattern.pattern());
+    }
+
+    static LinearRegex compile(String regex) {
+        Node node = RegexParser.parse(regex);
+        int groupCount = RegexParser.groupCount(regex);
+        BitSet repeatedGroups = new BitSet();
+        collectRepeatedGroups(node, false, repeatedGroups);
+        return new LinearRegex(regex, Program.compile(node, groupCount), groupCount, repeatedGroups);
+    }
+
+    private static void collectRepeatedGroups(Node node, boolean repeated, BitSet groups) {
+        if (node instanceof Node.Group) {
+            Node.Group group = (Node.Group) node;
+            if (repeated && group.index > 0) {
+                groups.set(group.index);
+            }
+            collectRepeatedGroups(group.node, repeated, groups);
+        } else if (node instanceof Node.Repeat) {
+            Node.Repeat repeat = (Node.Repeat) node;
+            collectRepeatedGroups(repeat.node, repeated || repeat.max == Node.Repeat.UNBOUNDED || repeat.max > 1, groups);
+        } else if (node instanceof Node.Concat) {
+            for (Node child : ((Node.Concat) node).nodes) {
+                collectRepeatedGroups(child, repeated, groups);
+            }
+        } else if (node instanceof Node.Alternation) {
+            for (Node child : ((Node.Alternation) node).alternatives) {
+                collectRepeatedGroups(child, repeated, groups);
+            }
+        }
+    }
+
+    /**
+     * Match the entire input against this regular expression.
+     *
+     * @param input the input to match.
+     * @return the match and its capture groups, or {@code null} if the input does not match.
+     */
+    public MatchResult match(CharSequence input) {
+        int length = input.length();
+        Threads current = new Threads(program.size());
+        Threads next = new Threads(program.size());
+
+        int[] captures = new int[program.slots];
+        Arrays.fill(captures, -1);
+        follow(current, 0, 0, captures, input);
+
+        int position = 0;
+        while (position < length) {
+            if (current.size == 0) {
+                return null;
+            }
+
+            int codePoint = Character.codePointAt(input, position);
+            int nextPosition = position + Character.charCount(codePoint);
+
+            next.clear();
+            for (int idx = 0; idx < current.size; idx++) {
+                int pc = current.dense[idx];
+                if (program.opcodes[pc] == Program.CHAR && program.ranges[pc].contains(codePoint)) {
+                    follow(next, pc + 1, nextPosition, current.captures[idx], input);
+                }
+            }
+
+            Threads swap = current;
+            current = next;
+            next = swap;
+            position = nextPosition;
+        }
+
+        for (int idx = 0; idx < current.size; idx++) {
+            if (program.opcodes[current.dense[idx]] == Program.MATCH) {
+                return new LinearMatchResult(input, current.captures[idx]);
+            }
+        }
+
+        return null;
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * The JDK engine reports, for a group inside a repeated construct, values left over by an iteration the match
+     * eventually backtracked over, or captured by an empty iteration, where this engine reports the last iteration
+     * of the selected match. For instance, {@code (a*)*b} matched against {@code b} captures an empty string for the
+     * JDK engine, nothing for this one.
+     *
+     * @param group the index of a capture group, {@code 1} for the first one.
+     * @return {@code true} if the group is inside a construct which may repeat, its value possibly differing from the
+     *         one the JDK engine would report.
+     */
+    public boolean isRepeated(int group) {
+        return repeatedGroups.get(group);
+    }
+
+    /**
+     * Check whether no input can match both regular expressions, by exploring the product of their automata.
+     *
+     * Assertions are considered as always holding, which can only make the intersection larger: a {@code true}
+     * result is a proof, a {@code false} one may be a false positive.
+     *
+     * @param first the first regular expression.
+     * @param second the second regular expression.
+     * @param maxStates the maximum number of product states to explore before giving up.
+     * @return {@code true} if the regular expressions are proven to match disjoint sets of inputs.
+     */
+    public static boolean disjoint(LinearRegex first, LinearRegex second, int maxStates) {
+        int[][] firstClosures = first.closures();
+        int[][] secondClosures = second.closures();
+
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> pending = new ArrayDeque<>();
+        enqueue(firstClosures[0], secondClosures[0], visited, pending);
+
+        while (!pending.isEmpty()) {
+            if (visited.size() > maxStates) {
+                return false;
+            }
+
+            long state = pending.poll();
+            int firstPc = (int) (state >>> 32);
+            int secondPc = (int) state;
+            byte firstOpcode = first.program.opcodes[firstPc];
+            byte secondOpcode = second.program.opcodes[secondPc];
+
+            if (firstOpcode == Program.MATCH && secondOpcode == Program.MATCH) {
+                return false;
+            }
+            if (firstOpcode == Program.CHAR && secondOpcode == Program.CHAR
+                    && !first.program.ranges[firstPc].intersection(second.program.ranges[secondPc]).isEmpty()) {
+                enqueue(firstClosures[firstPc + 1], secondClosures[secondPc + 1], visited, pending);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether every input matched by the first regular expression is matched by the second one, by exploring
+     * the product of the first automaton with the subset construction of the second one.
+     *
+     * Assertions are considered as always holding in the first regular expression, and in the second one only at the
+     * beginning and end of the input for the anchors, never for word boundaries, which can only make the first language
+     * larger and the second one smaller: a {@code true} result is a proof, a {@code false} one may be a false negative.
+     *
+     * @param first the regular expression whose language should be included.
+     * @param second the regular expression whose language should include the first one.
+     * @param maxStates the maximum number of product states to explore before giving up.
+     * @return {@code true} if every input matched by the first regular expression is proven to be matched by the second one.
+     */
+    public static boolean includes(LinearRegex first, LinearRegex second, int maxStates) {
+        int[][] firstClosures = first.closures();
+        Map<Subset, Subset> subsets = new HashMap<>();
+        List<Subset> byId = new ArrayList<>();
+
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> pending = new ArrayDeque<>();
+        Subset initial = intern(new Subset(new int[] { 0 }, true), subsets, byId);
+        enqueue(firstClosures[0], initial, visited, pending);
+
+        while (!pending.isEmpty()) {
+            if (visited.size() > maxStates) {
+                return false;
+            }
+
+            long state = pending.poll();
+            int firstPc = (int) (state >>> 32);
+            Subset subset = byId.get((int) state);
+
+            if (first.program.opcodes[firstPc] == Program.MATCH) {
+                if (!second.accepts(subset)) {
+                    // An input matched by the first regular expression only
+                    return false;
+                }
+                continue;
+            }
+
+            int[] live = second.live(subset);
+            CharRanges range = first.program.ranges[firstPc];
+            for (int codePoint : second.representatives(range, live)) {
+                int[] next = new int[live.length];
+                int size = 0;
+                for (int pc : live) {
+                    if (second.program.opcodes[pc] == Program.CHAR && second.program.ranges[pc].contains(codePoint)) {
+                        next[size++] = pc + 1;
+                    }
+                }
+                // Sorted so that a same set of instructions is a same subset
+                int[] pcs = Arrays.copyOf(next, size);
+                Arrays.sort(pcs);
+                Subset target = intern(new Subset(pcs, false), subsets, byId);
+                enqueue(firstClosures[firstPc + 1], target, visited, pending);
+            }
+        }
+
+        return true;
+    }
+
+    private static Subset intern(Subset subset, Map<Subset, Subset> subsets, List<Subset> byId) {
+        Subset existing = subsets.get(subset);
+        if (existing != null) {
+            return existing;
+        }
+        subset.id = byId.size();
+        byId.add(subset);
+        subsets.put(subset, subset);
+        return subset;
+    }
+
+    private static void enqueue(int[] firstPcs, Subset subset, Set<Long> visited, Deque<Long> pending) {
+        for (int firstPc : firstPcs) {
+            long state = ((long) firstPc << 32) | subset.id;
+            if (visited.add(state)) {
+                pending.add(state);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the subset reaches a match instruction at the end of the input.
+     */
+    private boolean accepts(Subset subset) {
+        for (int pc : closure(subset.pcs, subset.start, true)) {
+            if (program.opcodes[pc] == Program.MATCH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the character instructions reachable from the subset before the end of the input.
+     */
+    private int[] live(Subset subset) {
+        if (subset.live == null) {
+            subset.live = closure(subset.pcs, subset.start, false);
+        }
+        return subset.live;
+    }
+
+    /**
+     * @return the character and match instructions reachable from the given ones without consuming input, assertions
+     * only holding where they are known to.
+     */
+    private int[] closure(int[] pcs, boolean start, boolean end) {
+        Threads threads = new Threads(program.size());
+        int[] stack = new int[2 * program.size() + pcs.length];
+        int top = 0;
+        for (int pc : pcs) {
+            stack[top++] = pc;
+        }
+
+        while (top > 0) {
+            int pc = stack[--top];
+            if (pc >= program.size() || !threads.add(pc)) {
+                continue;
+            }
+            byte opcode = program.opcodes[pc];
+            if (opcode == Program.JUMP) {
+                stack[top++] = program.targets[pc];
+            } else if (opcode == Program.SPLIT) {
+                stack[top++] = program.alternates[pc];
+                stack[top++] = program.targets[pc];
+            } else if (opcode == Program.SAVE) {
+                stack[top++] = pc + 1;
+            } else if (opcode == Program.ASSERT) {
+                Node.AssertionKind kind = program.assertions[pc];
+                boolean holds = (kind == Node.AssertionKind.BEGIN_INPUT) ? start
+                        : (kind == Node.AssertionKind.END_INPUT || kind == Node.AssertionKind.END_INPUT_BEFORE_TERMINATOR) && end;
+                if (holds) {
+                    stack[top++] = pc + 1;
+                }
+            }
+        }
+
+        int[] reachable = new int[threads.size];
+        int size = 0;
+        for (int idx = 0; idx < threads.size; idx++) {
+            byte opcode = program.opcodes[threads.dense[idx]];
+            if (opcode == Program.CHAR || opcode == Program.MATCH) {
+                reachable[size++] = threads.dense[idx];
+            }
+        }
+        return Arrays.copyOf(reachable, size);
+    }
+
+    /**
+     * @return a code point of each interval of the range over which the given instructions all either match or not.
+     */
+    private int[] representatives(CharRanges range, int[] pcs) {
+        TreeSet<Integer> starts = new TreeSet<>();
+        for (int idx = 0; idx < range.rangeCount(); idx++) {
+            int low = range.low(idx);
+            int high = range.high(idx);
+            starts.add(low);
+            for (int pc : pcs) {
+                if (program.opcodes[pc] != Program.CHAR) {
+                    continue;
+                }
+                CharRanges other = program.ranges[pc];
+                for (int otherIdx = 0; otherIdx < other.rangeCount(); otherIdx++) {
+                    if (other.low(otherIdx) > low && other.low(otherIdx) <= high) {
+                        starts.add(other.low(otherIdx));
+                    }
+                    if (other.high(otherIdx) >= low && other.high(otherIdx) < high) {
+                        starts.add(other.high(otherIdx) + 1);
+                    }
+                }
+            }
+        }
+
+        int[] representatives = new int[starts.size()];
+        int idx = 0;
+        for (int start : starts) {
+            representatives[idx++] = start;
+        }
+        return representatives;
+    }
+
+    private static void enqueue(int[] firstPcs, int[] secondPcs, Set<Long> visited, Deque<Long> pending) {
+        for (int firstPc : firstPcs) {
+            for (int secondPc : secondPcs) {
+                long state = ((long) firstPc << 32) | secondPc;
+                if (visited.add(state)) {
+                    pending.add(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return for each instruction, the character and match instructions reachable from it without consuming input,
+     * assertions being considered as holding.
+     */
+    private int[][] closures() {
+        int size = program.size();
+        int[][] closures = new int[size + 1][];
+        Threads threads = new Threads(size);
+        // Each instruction is expanded once, and pushes at most two others
+        int[] stack = new int[2 * size + 1];
+
+        for (int start = 0; start < size; start++) {
+            threads.clear();
+            int top = 0;
+            stack[top++] = start;
+
+            int[] reachable = new int[0];
+            while (top > 0) {
+                int pc = stack[--top];
+                if (!threads.add(pc)) {
+                    continue;
+                }
+                byte opcode = program.opcodes[pc];
+                if (opcode == Program.JUMP) {
+                    stack[top++] = program.targets[pc];
+                } else if (opcode == Program.SPLIT) {
+                    stack[top++] = program.alternates[pc];
+                    stack[top++] = program.targets[pc];
+                } else if (opcode == Program.SAVE || opcode == Program.ASSERT) {
+                    stack[top++] = pc + 1;
+                } else {
+                    reachable = Arrays.copyOf(reachable, reachable.length + 1);
+                    reachable[reachable.length - 1] = pc;
+                }
+            }
+            closures[start] = reachable;
+        }
+
+        // Past the last instruction, nothing is reachable
+        closures[size] = new int[0];
+        return closures;
+    }
+
+    public String pattern() {
+        return regex;
+    }
+
+    /**
+     * Add to the list the threads reachable from the given instruction without consuming input,
+     * in priority order.
+     */
+    private void follow(Threads threads, int start, int position, int[] startCaptures, CharSequence input) {
+        int[] stack = threads.stack;
+        int[][] stackCaptures = threads.stackCaptures;
+        int top = 0;
+        stack[top] = start;
+        stackCaptures[top++] = startCaptures;
+
+        while (top > 0) {
+            int pc = stack[--top];
+            int[] captures = stackCaptures[top];
+            stackCaptures[top] = null;
+
+            while (threads.add(pc)) {
+                byte opcode = program.opcodes[pc];
+                if (opcode == Program.JUMP) {
+                    pc = program.targets[pc];
+                } else if (opcode == Program.SPLIT) {
+                    stack[top] = program.alternates[pc];
+                    stackCaptures[top++] = captures;
+                    pc = program.targets[pc];
+                } else if (opcode == Program.SAVE) {
+                    captures = captures.clone();
+                    captures[program.targets[pc]] = position;
+                    pc++;
+                } else if (opcode == Program.ASSERT) {
+                    if (!holds(program.assertions[pc], input, position)) {
+                        break;
+                    }
+                    pc++;
+                } else {
+                    // Character and match instructions are the live threads
+                    threads.captures[threads.size - 1] = captures;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean holds(Node.AssertionKind kind, CharSequence input, int position) {
+        int length = input.length();
+        switch (kind) {
+            case BEGIN_INPUT:
+                return position == 0;
+            case END_INPUT:
+                return position == length;
+            case END_INPUT_BEFORE_TERMINATOR:
+                if (position == length) {
+                    return true;
+                }
+                if (position == length - 2) {
+                    return input.charAt(position) == '\r' && input.charAt(position + 1) == '\n';
+                }
+                if (position == length - 1) {
+                    char c = input.charAt(position);
+                    return CharRanges.LINE_TERMINATOR.contains(c)
+                            && !(c == '\n' && position > 0 && input.charAt(position - 1) == '\r');
+                }
+                return false;
+            case WORD_BOUNDARY:
+                return isWord(input, position - 1) != isWord(input, position);
+            case NOT_WORD_BOUNDARY:
+                return isWord(input, position - 1) == isWord(input, position);
+            default:
+                throw new IllegalStateException("Unknown assertion " + kind);
+        }
+    }
+
+    private static boolean isWord(CharSequence input, int position) {
+        if (position < 0 || position >= input.length()) {
+            return false;
+        }
+        char c = input.charAt(position);
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    /**
+     * A set of instructions of the second regular expression of {@link #includes}, before their closure.
+     */
+    private static final class Subset {
+
+        private final int[] pcs;
+        private final boolean start;
+        private int id;
+        private int[] live;
+
+        private Subset(int[] pcs, boolean start) {
+            this.pcs = pcs;
+            this.start = start;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Subset && start == ((Subset) obj).start && Arrays.equals(pcs, ((Subset) obj).pcs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(pcs) * 31 + (start ? 1 : 0);
+        }
+    }
+
+    /**
+     * Sparse set of program counters, in insertion order, with the captures of each thread.
+     */
+    private static final class Threads {
+
+        private final int[] sparse;
+        private final int[] dense;
+        private final int[][] captures;
+        private final int[] stack;
+        private final int[][] stackCaptures;
+        private int size;
+
+        private Threads(int capacity) {
+            this.sparse = new int[capacity];
+            this.dense = new int[capacity];
+            this.captures = new int[capacity][];
+            this.stack = new int[capacity];
+            this.stackCaptures = new int[capacity][];
+        }
+
+        private boolean add(int pc) {
+            int idx = sparse[pc];
+            if (idx < size && dense[idx] == pc) {
+                return false;
+            }
+            sparse[pc] = size;
+            dense[size++] = pc;
+            return true;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import java.util.List;
+
+/**
+ * Syntax tree of a regular expression, as produced by {@link RegexParser}.
+ *
+ * @author GraviteeSource Team
+ */
+abstract class Node {
+
+    /**
+     * Zero-width conditions on the position in the input.
+     */
+    enum AssertionKind {
+        BEGIN_INPUT,
+        END_INPUT,
+        /**
+         * End of input, or before a final line terminator ({@code $}, {@code \Z}).
+         */
+        END_INPUT_BEFORE_TERMINATOR,
+        WORD_BOUNDARY,
+        NOT_WORD_BOUNDARY
+    }
+
+    /**
+     * Matches a single code point among a set.
+     */
+    static final class CharClass extends Node {
+
+        final CharRanges ranges;
+
+        CharClass(CharRanges ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    static final class Concat extends Node {
+
+        final List<Node> nodes;
+
+        Concat(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+    }
+
+    static final class Alternation extends Node {
+
+        final List<Node> alternatives;
+
+        Alternation(List<Node> alternatives) {
+            this.alternatives = alternatives;
+        }
+    }
+
+    static final class Repeat extends Node {
+
+        static final int UNBOUNDED = -1;
+
+        final Node node;
+        final int min;
+        final int max;
+        final boolean greedy;
+
+        Repeat(Node node, int min, int max, boolean greedy) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.greedy = greedy;
+        }
+    }
+
+    static final class Group extends Node {
+
+        final Node node;
+
+        /**
+         * Index of the capture group, or {@code -1} for a non-capturing group.
+         */
+        final int index;
+
+        Group(Node node, int index) {
+            this.node = node;
+            this.index = index;
+        }
+    }
+
+    static final class Assertion extends Node {
+
+        final AssertionKind kind;
+
+        Assertion(AssertionKind kind) {
+            this.kind = kind;
+        }
+    }
+
+    static final class Empty extends Node {
+
+        static final Empty INSTANCE = new Empty();
+
+        private Empty() {
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Instructions of a {@link Node} tree, compiled for the {@link LinearRegex} virtual machine.
+ *
+ * @author GraviteeSource Team
+ */
+final class Program {
+
+    static final byte CHAR = 0;
+    static final byte SPLIT = 1;
+    static final byte JUMP = 2;
+    static final byte SAVE = 3;
+    static final byte ASSERT = 4;
+    static final byte MATCH = 5;
+
+    /**
+     * Upper bound on the number of instructions, counted repetitions being expanded.
+     */
+    static final int MAX_INSTRUCTIONS = 10000;
+
+    final byte[] opcodes;
+
+    /**
+     * Jump target, first branch of a split, or capture slot.
+     */
+    final int[] targets;
+
+    /**
+     * Second, lower priority, branch of a split.
+     */
+    final int[] alternates;
+
+    final CharRanges[] ranges;
+    final Node.AssertionKind[] assertions;
+
+    /**
+     * Number of capture slots, two per group including the whole match.
+     */
+    final int slots;
+
+    private Program(Builder builder, int groupCount) {
+        int size = builder.size;
+        this.opcodes = Arrays.copyOf(builder.opcodes, size);
+        this.targets = Arrays.copyOf(builder.targets, size);
+        this.alternates = Arrays.copyOf(builder.alternates, size);
+        this.ranges = Arrays.copyOf(builder.ranges, size);
+        this.assertions = Arrays.copyOf(builder.assertions, size);
+        this.slots = (groupCount + 1) * 2;
+    }
+
+    static Program compile(Node node, int groupCount) {
+        Builder builder = new Builder();
+        builder.emit(SAVE, 0, 0);
+        builder.compile(node);
+        builder.emit(SAVE, 1, 0);
+        builder.emit(MATCH, 0, 0);
+        return new Program(builder, groupCount);
+    }
+
+    int size() {
+        return opcodes.length;
+    }
+
+    private static final class Builder {
+
+        private byte[] opcodes = new byte[16];
+        private int[] targets = new int[16];
+        private int[] alternates = new int[16];
+        private CharRanges[] ranges = new CharRanges[16];
+        private Node.AssertionKind[] assertions = new Node.AssertionKind[16];
+        private int size;
+
+        private int emit(byte opcode, int target, int alternate) {
+            if (size == MAX_INSTRUCTIONS) {
+                throw new IllegalArgumentException("Regular expression is too large, more than "
+                        + MAX_INSTRUCTIONS + " instructions once compiled");
+            }
+            if (size == opcodes.length) {
+                int capacity = size * 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                alternates = Arrays.copyOf(alternates, capacity);
+                ranges = Arrays.copyOf(ranges, capacity);
+                assertions = Arrays.copyOf(assertions, capacity);
+            }
+
+            opcodes[size] = opcode;
+            targets[size] = target;
+            alternates[size] = alternate;
+            return size++;
+        }
+
+        private void compile(Node node) {
+            if (node instanceof Node.CharClass) {
+                int pc = emit(CHAR, 0, 0);
+                ranges[pc] = ((Node.CharClass) node).ranges;
+            } else if (node instanceof Node.Concat) {
+                for (Node child : ((Node.Concat) node).nodes) {
+                    compile(child);
+                }
+            } else if (node instanceof Node.Alternation) {
+                alternation(((Node.Alternation) node).alternatives);
+            } else if (node instanceof Node.Repeat) {
+                repeat((Node.Repeat) node);
+            } else if (node instanceof Node.Group) {
+                Node.Group group = (Node.Group) node;
+                if (group.index < 0) {
+                    compile(group.node);
+                } else {
+                    emit(SAVE, group.index * 2, 0);
+                    compile(group.node);
+                    emit(SAVE, group.index * 2 + 1, 0);
+                }
+            } else if (node instanceof Node.Assertion) {
+                int pc = emit(ASSERT, 0, 0);
+                assertions[pc] = ((Node.Assertion) node).kind;
+            }
+            // Node.Empty does not need any instruction
+        }
+
+        private void alternation(List<Node> alternatives) {
+            int[] jumps = new int[alternatives.size() - 1];
+
+            for (int idx = 0; idx < jumps.length; idx++) {
+                int split = emit(SPLIT, size + 1, 0);
+                compile(alternatives.get(idx));
+                jumps[idx] = emit(JUMP, 0, 0);
+                alternates[split] = size;
+            }
+            compile(alternatives.get(jumps.length));
+
+            for (int jump : jumps) {
+                targets[jump] = size;
+            }
+        }
+
+        private void repeat(Node.Repeat repeat) {
+            if (repeat.min > MAX_INSTRUCTIONS || repeat.max > MAX_INSTRUCTIONS) {
+                throw new IllegalArgumentException("Repetition count is too large: " + Math.max(repeat.min, repeat.max));
+            }
+
+            for (int idx = 0; idx < repeat.min; idx++) {
+                compile(repeat.node);
+            }
+
+            if (repeat.max == Node.Repeat.UNBOUNDED) {
+                // L: split body, end ; body ; jump L
+                int split = emit(SPLIT, 0, 0);
+                int body = size;
+                compile(repeat.node);
+                emit(JUMP, split, 0);
+                branch(split, body, size, repeat.greedy);
+                return;
+            }
+
+            // Each optional occurrence skips all of the remaining ones when not taken
+            int optional = repeat.max - repeat.min;
+            int[] splits = new int[optional];
+            for (int idx = 0; idx < optional; idx++) {
+                splits[idx] = emit(SPLIT, 0, 0);
+                compile(repeat.node);
+            }
+            for (int split : splits) {
+                branch(split, split + 1, size, repeat.greedy);
+            }
+        }
+
+        private void branch(int split, int body, int skip, boolean greedy) {
+            targets[split] = greedy ? body : skip;
+            alternates[split] = greedy ? skip : body;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser for the subset of the {@link java.util.regex.Pattern} syntax which can be matched in
+ * linear time: literals, character classes, groups (capturing, named, non-capturing), alternations,
+ * greedy and reluctant quantifiers, anchors and word boundaries.
+ *
+ * Back-references, look-arounds, atomic groups, possessive quantifiers, flags and Unicode
+ * properties are rejected with an {@link IllegalArgumentException}.
+ *
+ * @author GraviteeSource Team
+ */
+final class RegexParser {
+
+    private final String regex;
+    private int pos;
+    private int groupCount;
+
+    private RegexParser(String regex) {
+        this.regex = regex;
+    }
+
+    static Node parse(String regex) {
+        RegexParser parser = new RegexParser(regex);
+        Node node = parser.alternation();
+        if (parser.pos < regex.length()) {
+            throw parser.error("Unmatched closing ')'");
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of capture groups of the given pattern, as {@link #parse(String)} numbers them.
+     */
+    static int groupCount(String regex) {
+        RegexParser parser = new RegexParser(regex);
+        parser.alternation();
+        return parser.groupCount;
+    }
+
+    private Node alternation() {
+        List<Node> alternatives = new ArrayList<>();
+        alternatives.add(concat());
+
+        while (more() && peek() == '|') {
+            pos++;
+            alternatives.add(concat());
+        }
+
+        return (alternatives.size() == 1) ? alternatives.get(0) : new Node.Alternation(alternatives);
+    }
+
+    private Node concat() {
+        List<Node> nodes = new ArrayList<>();
+
+        while (more() && peek() != '|' && peek() != ')') {
+            if (regex.startsWith("\\Q", pos)) {
+                quoted(nodes);
+            } else {
+                nodes.add(quantified(atom()));
+            }
+        }
+
+        if (nodes.isEmpty()) {
+            return Node.Empty.INSTANCE;
+        }
+        return (nodes.size() == 1) ? nodes.get(0) : new Node.Concat(nodes);
+    }
+
+    private void quoted(List<Node> nodes) {
+        int end = regex.indexOf("\\E", pos + 2);
+        String text = regex.substring(pos + 2, (end < 0) ? regex.length() : end);
+        pos = (end < 0) ? regex.length() : end + 2;
+
+        for (int idx = 0; idx < text.length(); ) {
+            int codePoint = text.codePointAt(idx);
+            idx += Character.charCount(codePoint);
+            Node literal = new Node.CharClass(CharRanges.of(codePoint));
+            // A quantifier following the quoted text only applies to its last character
+            nodes.add((idx < text.length()) ? literal : quantified(literal));
+        }
+    }
+
+    private Node quantified(Node atom) {
+        if (!more()) {
+            return atom;
+        }
+
+        int min;
+        int max;
+        switch (peek()) {
+            case '?':
+                min = 0;
+                max = 1;
+                pos++;
+                break;
+            case '*':
+                min = 0;
+                max = Node.Repeat.UNBOUNDED;
+                pos++;
+                break;
+            case '+':
+                min = 1;
+                max = Node.Repeat.UNBOUNDED;
+                pos++;
+                break;
+            case '{':
+                int end = regex.indexOf('}', pos);
+                if (end < 0) {
+                    throw error("Unclosed counted closure");
+                }
+                String[] range = regex.substring(pos + 1, end).split(",", -1);
+                try {
+                    min = Integer.parseInt(range[0]);
+                    max = (range.length == 1) ? min : range[1].isEmpty() ? Node.Repeat.UNBOUNDED : Integer.parseInt(range[1]);
+                } catch (NumberFormatException nfe) {
+                    throw error("Illegal repetition");
+                }
+                if (range.length > 2 || (max != Node.Repeat.UNBOUNDED && max < min)) {
+                    throw error("Illegal repetition range");
+                }
+                pos = end + 1;
+                break;
+            default:
+                return atom;
+        }
+
+        boolean greedy = true;
+        if (more() && peek() == '?') {
+            greedy = false;
+            pos++;
+        } else if (more() && peek() == '+') {
+            throw error("Possessive quantifiers are not supported");
+        }
+
+        return new Node.Repeat(atom, min, max, greedy);
+    }
+
+    private Node atom() {
+        int codePoint = regex.codePointAt(pos);
+        pos += Character.charCount(codePoint);
+
+        switch (codePoint) {
+            case '(':
+                return group();
+            case '[':
+                return new Node.CharClass(characterClass());
+            case '.':
+                return new Node.CharClass(CharRanges.DOT);
+            case '^':
+                return new Node.Assertion(Node.AssertionKind.BEGIN_INPUT);
+            case '$':
+                return new Node.Assertion(Node.AssertionKind.END_INPUT_BEFORE_TERMINATOR);
+            case '\\':
+                return escape();
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw error("Dangling meta character '" + (char) codePoint + "'");
+            default:
+                return new Node.CharClass(CharRanges.of(codePoint));
+        }
+    }
+
+    private Node group() {
+        int index = -1;
+
+        if (more() && peek() == '?') {
+            if (regex.startsWith("?:", pos)) {
+                pos += 2;
+            } else if (regex.startsWith("?<", pos) && pos + 2 < regex.length()
+                    && Character.isLetter(regex.charAt(pos + 2))) {
+                int end = regex.indexOf('>', pos);
+                if (end < 0) {
+                    throw error("Named capturing group is missing trailing '>'");
+                }
+                pos = end + 1;
+                index = ++groupCount;
+            } else {
+                throw error("Look-arounds, atomic groups and flags are not supported");
+            }
+        } else {
+            index = ++groupCount;
+        }
+
+        Node node = alternation();
+        if (!more() || peek() != ')') {
+            throw error("Unclosed group");
+        }
+        pos++;
+
+        return new Node.Group(node, index);
+    }
+
+    private Node escape() {
+        if (!more()) {
+            throw error("Unexpected internal error");
+        }
+
+        char c = regex.charAt(pos);
+        switch (c) {
+            case 'b':
+                pos++;
+                return new Node.Assertion(Node.AssertionKind.WORD_BOUNDARY);
+            case 'B':
+                pos++;
+                return new Node.Assertion(Node.AssertionKind.NOT_WORD_BOUNDARY);
+            case 'A':
+                pos++;
+                return new Node.Assertion(Node.AssertionKind.BEGIN_INPUT);
+            case 'z':
+                pos++;
+                return new Node.Assertion(Node.AssertionKind.END_INPUT);
+            case 'Z':
+                pos++;
+                return new Node.Assertion(Node.AssertionKind.END_INPUT_BEFORE_TERMINATOR);
+            default:
+                return new Node.CharClass(escapedCharacters());
+        }
+    }
+
+    /**
+     * Parse an escape sequence standing for one character among a set, the leading backslash being consumed.
+     */
+    private CharRanges escapedCharacters() {
+        char c = regex.charAt(pos++);
+        switch (c) {
+            case 'd':
+                return CharRanges.DIGIT;
+            case 'D':
+                return CharRanges.DIGIT.complement();
+            case 'w':
+                return CharRanges.WORD;
+            case 'W':
+                return CharRanges.WORD.complement();
+            case 's':
+                return CharRanges.SPACE;
+            case 'S':
+                return CharRanges.SPACE.complement();
+            case 'h':
+                return CharRanges.HORIZONTAL_SPACE;
+            case 'H':
+                return CharRanges.HORIZONTAL_SPACE.complement();
+            case 'v':
+                return CharRanges.VERTICAL_SPACE;
+            case 'V':
+                return CharRanges.VERTICAL_SPACE.complement();
+            case 't':
+                return CharRanges.of('\t');
+            case 'n':
+                return CharRanges.of('\n');
+            case 'r':
+                return CharRanges.of('\r');
+            case 'f':
+                return CharRanges.of('\f');
+            case 'a':
+                return CharRanges.of(0x07);
+            case 'e':
+                return CharRanges.of(0x1B);
+            case 'c':
+                if (!more()) {
+                    throw error("Illegal control escape sequence");
+                }
+                return CharRanges.of(regex.charAt(pos++) ^ 64);
+            case 'x':
+                if (more() && peek() == '{') {
+                    int end = regex.indexOf('}', pos);
+                    if (end < 0) {
+                        throw error("Unclosed hexadecimal escape sequence");
+                    }
+                    int codePoint = hex(pos + 1, end);
+                    pos = end + 1;
+                    return CharRanges.of(codePoint);
+                }
+                pos += 2;
+                return CharRanges.of(hex(pos - 2, pos));
+            case 'u':
+                pos += 4;
+                return CharRanges.of(hex(pos - 4, pos));
+            case '0':
+                int start = pos;
+                while (pos < regex.length() && pos - start < 3 && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw error("Illegal octal escape sequence");
+                }
+                return CharRanges.of(Integer.parseInt(regex.substring(start, pos), 8));
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    throw error("Escape sequence '\\" + c + "' is not supported");
+                }
+                return CharRanges.of(c);
+        }
+    }
+
+    private CharRanges characterClass() {
+        boolean negated = false;
+        if (more() && peek() == '^') {
+            negated = true;
+            pos++;
+        }
+
+        CharRanges ranges = CharRanges.NONE;
+        boolean first = true;
+
+        while (true) {
+            if (!more()) {
+                throw error("Unclosed character class");
+            }
+
+            char c = peek();
+            if (c == ']' && !first) {
+                pos++;
+                break;
+            }
+            first = false;
+
+            if (c == '[' || regex.startsWith("&&", pos)) {
+                throw error("Nested character classes and intersections are not supported");
+            }
+
+            int low;
+            if (c == '\\') {
+                pos++;
+                CharRanges escaped = escapedCharacters();
+                if (escaped.rangeCount() != 1 || escaped.low(0) != escaped.high(0)) {
+                    ranges = ranges.union(escaped);
+                    continue;
+                }
+                low = escaped.low(0);
+            } else {
+                low = regex.codePointAt(pos);
+                pos += Character.charCount(low);
+            }
+
+            if (pos + 1 < regex.length() && peek() == '-' && regex.charAt(pos + 1) != ']') {
+                pos++;
+                int high;
+                if (peek() == '\\') {
+                    pos++;
+                    CharRanges escaped = escapedCharacters();
+                    if (escaped.rangeCount() != 1 || escaped.low(0) != escaped.high(0)) {
+                        throw error("Illegal character range");
+                    }
+                    high = escaped.low(0);
+                } else {
+                    high = regex.codePointAt(pos);
+                    pos += Character.charCount(high);
+                }
+                if (high < low) {
+                    throw error("Illegal character range");
+                }
+                ranges = ranges.union(CharRanges.range(low, high));
+            } else {
+                ranges = ranges.union(CharRanges.of(low));
+            }
+        }
+
+        return negated ? ranges.complement() : ranges;
+    }
+
+    private int hex(int start, int end) {
+        try {
+            int codePoint = Integer.parseInt(regex.substring(start, Math.min(end, regex.length())), 16);
+            if (codePoint > Character.MAX_CODE_POINT) {
+                throw error("Hexadecimal codepoint is too big");
+            }
+            return codePoint;
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw error("Illegal hexadecimal escape sequence");
+        }
+    }
+
+    private boolean more() {
+        return pos < regex.length();
+    }
+
+    private char peek() {
+        return regex.charAt(pos);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " near index " + pos + " in " + regex);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.interning;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Process-wide table of immutable compiled artefacts, so that identical sources deployed by several
+ * APIs, or redeployed, are compiled once and share a single instance.
+ *
+ * Artefacts are weakly referenced: they are retained as long as a deployed configuration uses them.
+ * Lookups only happen when configurations are deserialized and compiled, never per request.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Interner<K, V> {
+
+    private final String name;
+    private final ToIntFunction<K> weigher;
+    private final Map<K, Entry<K, V>> entries = new HashMap<>();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long retainedWeight;
+
+    /**
+     * @param name the name of the artefacts, for reporting.
+     * @param weigher estimates the size of an artefact from its key, typically the length of its source.
+     */
+    Interner(String name, ToIntFunction<K> weigher) {
+        this.name = name;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param key the normalised source of the artefact.
+     * @param factory compiles the artefact when no live instance exists for the key.
+     * @return the shared artefact.
+     */
+    public V intern(K key, Function<? super K, ? extends V> factory) {
+        synchronized (entries) {
+            expungeStaleEntries();
+
+            Entry<K, V> entry = entries.get(key);
+            V value = (entry == null) ? null : entry.get();
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+
+            value = factory.apply(key);
+            int weight = weigher.applyAsInt(key);
+            if (entry != null) {
+                // Cleared but not yet enqueued, it will be ignored once polled
+                retainedWeight -= entry.weight;
+            }
+            entries.put(key, new Entry<>(key, value, weight, queue));
+            retainedWeight += weight;
+            misses.increment();
+            return value;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of lookups served by an existing artefact.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of artefacts compiled.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of lookups served by an existing artefact, 0 if none happened.
+     */
+    public double getReuseRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of artefacts currently retained.
+     */
+    public int size() {
+        synchronized (entries) {
+            expungeStaleEntries();
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the estimated size of the artefacts currently retained, as measured by the weigher.
+     */
+    public long getRetainedWeight() {
+        synchronized (entries) {
+            expungeStaleEntries();
+            return retainedWeight;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeStaleEntries() {
+        Entry<K, V> entry;
+        while ((entry = (Entry<K, V>) queue.poll()) != null) {
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+                retainedWeight -= entry.weight;
+            }
+        }
+    }
+
+    private static final class Entry<K, V> extends WeakReference<V> {
+
+        private final K key;
+        private final int weight;
+
+        private Entry(K key, V value, int weight, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.interning;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToIntFunction;
+
+/**
+ * Creates the {@link Interner}s of the policy and keeps track of them for reporting.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Interners {
+
+    private static final List<Interner<?, ?>> INTERNERS = new CopyOnWriteArrayList<>();
+
+    private Interners() {
+    }
+
+    /**
+     * @param name the name of the artefacts, for reporting.
+     * @param weigher estimates the size of an artefact from its key, typically the length of its source.
+     * @return a new interner.
+     */
+    public static <K, V> Interner<K, V> create(String name, ToIntFunction<K> weigher) {
+        Interner<K, V> interner = new Interner<>(name, weigher);
+        INTERNERS.add(interner);
+        return interner;
+    }
+
+    /**
+     * @return every interner created, to report their reuse rate and retained size.
+     */
+    public static List<Interner<?, ?>> all() {
+        return Collections.unmodifiableList(INTERNERS);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with power of two buckets: bucket {@code n} counts the durations between
+ * {@code 2^(n-1)} (inclusive) and {@code 2^n} (exclusive) nanoseconds, bucket 0 the null durations.
+ *
+ * Recording is a single atomic increment, the relative error of the reported percentiles is at most 2x.
+ *
+ * @author GraviteeSource Team
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The last bucket holds every duration of 2^38 ns (about 4.5 minutes) or more.
+     */
+    static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * @return the number of durations recorded in the given bucket.
+     */
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * @return the total number of recorded durations.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            count += counts.get(bucket);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound, in nanoseconds, of the bucket holding the given percentile, 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            count += snapshot[bucket];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    public int getBucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * @return the exclusive upper bound, in nanoseconds, of the given bucket.
+     */
+    public static long upperBound(int bucket) {
+        return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + TimeUnit.NANOSECONDS.toMicros(getPercentile(50)) + "us, p99="
+                + TimeUnit.NANOSECONDS.toMicros(getPercentile(99)) + "us";
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link MetricsRegistry} in use.
+ *
+ * @author GraviteeSource Team
+ */
+public final class MetricsRegistries {
+
+    private static volatile MetricsRegistry registry = load();
+
+    private MetricsRegistries() {
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @param registry the registry to use, {@code null} to disable registration.
+     */
+    public static void setRegistry(MetricsRegistry registry) {
+        MetricsRegistries.registry = (registry == null) ? MetricsRegistry.NONE : registry;
+    }
+
+    private static MetricsRegistry load() {
+        Iterator<MetricsRegistry> registries =
+                ServiceLoader.load(MetricsRegistry.class, MetricsRegistry.class.getClassLoader()).iterator();
+        return registries.hasNext() ? registries.next() : MetricsRegistry.NONE;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.metrics;
+
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+
+/**
+ * Receives the statistics of every policy configuration having metrics enabled, to expose them
+ * through any monitoring system.
+ *
+ * The registry in use is the one set with {@link MetricsRegistries#setRegistry(MetricsRegistry)},
+ * or the first one declared as a {@link java.util.ServiceLoader} service.
+ *
+ * @author GraviteeSource Team
+ */
+public interface MetricsRegistry {
+
+    MetricsRegistry NONE = (configuration, statistics) -> { };
+
+    /**
+     * Called each time the path changes of a configuration are compiled, the given statistics
+     * replacing the previous ones of the configuration.
+     *
+     * @param configuration the policy configuration.
+     * @param statistics the statistics of its path changes, updated as requests are processed.
+     */
+    void register(TransformPathPolicyConfiguration configuration, RuleSetStatistics statistics);
+}
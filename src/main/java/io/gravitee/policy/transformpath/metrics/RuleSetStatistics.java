@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the path changes of a policy configuration.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RuleSetStatistics {
+
+    private final RuleStatistics[] rules;
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder missTime = new LongAdder();
+    private final LatencyHistogram missLatency = new LatencyHistogram();
+    private final LongAdder mappingHits = new LongAdder();
+
+    /**
+     * @param size the number of path changes.
+     */
+    public RuleSetStatistics(int size) {
+        this.rules = new RuleStatistics[size];
+        for (int idx = 0; idx < size; idx++) {
+            rules[idx] = new RuleStatistics(idx);
+        }
+    }
+
+    /**
+     * Record a request matched by a rule.
+     *
+     * @param index the index of the matching rule.
+     * @param matchNanos the time spent looking for the matching rule.
+     * @param renderNanos the time spent rendering the target path.
+     */
+    public void recordHit(int index, long matchNanos, long renderNanos) {
+        rules[index].recordHit(matchNanos, renderNanos);
+    }
+
+    /**
+     * Record a request rewritten from the cache.
+     *
+     * @param index the index of the rule which produced the cached path.
+     */
+    public void recordCachedHit(int index) {
+        rules[index].recordCachedHit();
+    }
+
+    /**
+     * Record a request matched by no rule.
+     *
+     * @param matchNanos the time spent evaluating the rules.
+     */
+    public void recordMiss(long matchNanos) {
+        misses.increment();
+        missTime.add(matchNanos);
+        missLatency.record(matchNanos);
+    }
+
+    /**
+     * Record a match aborted because it exceeded the match step limit, the rule being considered as not matching.
+     *
+     * @param index the index of the rule.
+     */
+    public void recordBudgetExceeded(int index) {
+        rules[index].recordBudgetExceeded();
+    }
+
+    /**
+     * Record a request rewritten by a literal path mapping.
+     */
+    public void recordMappingHit() {
+        mappingHits.increment();
+    }
+
+    /**
+     * @param index the position of the rule in the configured list of path changes.
+     */
+    public RuleStatistics getRule(int index) {
+        return rules[index];
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @return the number of requests matched by no rule, excluding those served from the rewrite cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getMissTime() {
+        return missTime.sum();
+    }
+
+    public LatencyHistogram getMissLatency() {
+        return missLatency;
+    }
+
+    /**
+     * @return the number of requests rewritten by a literal path mapping.
+     */
+    public long getMappingHits() {
+        return mappingHits.sum();
+    }
+}
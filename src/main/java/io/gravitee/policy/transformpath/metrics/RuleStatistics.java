@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of one path change: how often it is applied, and how long it takes to find and render it.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RuleStatistics {
+
+    private final int index;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder cachedHits = new LongAdder();
+    private final LongAdder matchTime = new LongAdder();
+    private final LongAdder renderTime = new LongAdder();
+    private final LatencyHistogram matchLatency = new LatencyHistogram();
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+    private final LongAdder budgetExceeded = new LongAdder();
+
+    RuleStatistics(int index) {
+        this.index = index;
+    }
+
+    void recordHit(long matchNanos, long renderNanos) {
+        hits.increment();
+        matchTime.add(matchNanos);
+        renderTime.add(renderNanos);
+        matchLatency.record(matchNanos);
+        renderLatency.record(renderNanos);
+    }
+
+    void recordCachedHit() {
+        hits.increment();
+        cachedHits.increment();
+    }
+
+    void recordBudgetExceeded() {
+        budgetExceeded.increment();
+    }
+
+    /**
+     * @return the position of the rule in the configured list of path changes.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the number of requests this rule has been applied to, including those served from the rewrite cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getCachedHits() {
+        return cachedHits.sum();
+    }
+
+    /**
+     * @return the cumulated time, in nanoseconds, spent to find this rule as the first one matching.
+     */
+    public long getMatchTime() {
+        return matchTime.sum();
+    }
+
+    /**
+     * @return the cumulated time, in nanoseconds, spent to render the target path of this rule.
+     */
+    public long getRenderTime() {
+        return renderTime.sum();
+    }
+
+    public LatencyHistogram getMatchLatency() {
+        return matchLatency;
+    }
+
+    public LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    /**
+     * @return the number of matches of this rule aborted because they exceeded the match step limit.
+     */
+    public long getBudgetExceeded() {
+        return budgetExceeded.sum();
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.tools;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.engine.CompiledRuleSet;
+import io.gravitee.policy.transformpath.engine.OverlapAnalyzer;
+import io.gravitee.policy.transformpath.engine.ShadowAnalyzer;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports which path changes of a policy configuration may match a same path, and so must keep
+ * their relative order when rules are adaptively reordered, then the path changes which are never
+ * applied or redundant, see {@link ShadowAnalyzer}.
+ *
+ * Usage: {@code java -cp <classpath> io.gravitee.policy.transformpath.tools.OverlapReport [--fail] configuration.json}
+ *
+ * With {@code --fail}, the exit status is 2 if a path change is never applied or redundant, to fail a build.
+ *
+ * @author GraviteeSource Team
+ */
+public final class OverlapReport {
+
+    private static final String FAIL = "--fail";
+
+    private OverlapReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean fail = args.length == 2 && FAIL.equals(args[0]);
+        if (args.length != 1 && !fail) {
+            System.err.println("Usage: OverlapReport [" + FAIL + "] <policy configuration JSON file>");
+            System.exit(1);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        TransformPathPolicyConfiguration configuration =
+                mapper.readValue(new File(args[args.length - 1]), TransformPathPolicyConfiguration.class);
+        List<PathChange> pathChanges = (configuration.getPathChangesFile() == null) ? configuration.getPathChanges() :
+                mapper.readValue(new File(configuration.getPathChangesFile()), new TypeReference<List<PathChange>>() { });
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges);
+        report(ruleSet, System.out);
+        List<ShadowAnalyzer.Finding> findings = reportFindings(CompiledRuleSet.compile(pathChanges, configuration), System.out);
+
+        if (fail && !findings.isEmpty()) {
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Print the path changes which are never applied or redundant.
+     *
+     * @return the findings printed.
+     */
+    public static List<ShadowAnalyzer.Finding> reportFindings(CompiledRuleSet ruleSet, PrintStream out) {
+        List<ShadowAnalyzer.Finding> findings = ShadowAnalyzer.analyze(ruleSet);
+        Map<ShadowAnalyzer.Kind, Integer> counts = new EnumMap<>(ShadowAnalyzer.Kind.class);
+        for (ShadowAnalyzer.Kind kind : ShadowAnalyzer.Kind.values()) {
+            counts.put(kind, 0);
+        }
+
+        out.println("Useless path changes:");
+        for (ShadowAnalyzer.Finding finding : findings) {
+            counts.put(finding.getKind(), counts.get(finding.getKind()) + 1);
+            out.println("  " + finding);
+        }
+
+        out.println("Summary:");
+        for (Map.Entry<ShadowAnalyzer.Kind, Integer> count : counts.entrySet()) {
+            out.println("  " + count.getKey() + ": " + count.getValue());
+        }
+        return findings;
+    }
+
+    /**
+     * Print the pairwise overlap analysis of the given rules.
+     */
+    public static void report(CompiledRuleSet ruleSet, PrintStream out) {
+        OverlapAnalyzer analyzer = new OverlapAnalyzer(ruleSet);
+        Map<OverlapAnalyzer.Overlap, Integer> counts = new EnumMap<>(OverlapAnalyzer.Overlap.class);
+        for (OverlapAnalyzer.Overlap overlap : OverlapAnalyzer.Overlap.values()) {
+            counts.put(overlap, 0);
+        }
+
+        out.println("Path changes: " + ruleSet.size());
+        for (int idx = 0; idx < ruleSet.size(); idx++) {
+            out.println("  #" + idx + " " + ruleSet.getRule(idx).getPattern());
+        }
+
+        out.println("Pairs which may overlap:");
+        for (int first = 0; first < ruleSet.size(); first++) {
+            for (int second = first + 1; second < ruleSet.size(); second++) {
+                OverlapAnalyzer.Overlap overlap = analyzer.analyze(first, second);
+                counts.put(overlap, counts.get(overlap) + 1);
+                if (!overlap.isDisjoint()) {
+                    out.println("  #" + first + " before #" + second);
+                }
+            }
+        }
+
+        out.println("Summary:");
+        for (Map.Entry<OverlapAnalyzer.Overlap, Integer> count : counts.entrySet()) {
+            out.println("  " + count.getKey() + ": " + count.getValue());
+        }
+    }
+}
@@ -16,13 +16,19 @@
 package io.gravitee.policy.transformpath;
 
 import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.common.util.MultiValueMap;
 import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
 import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.el.SpelTemplateEngine;
 import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.transformpath.configuration.ParameterChange;
 import io.gravitee.policy.transformpath.configuration.PathChange;
 import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.engine.RuleSetCache;
+import io.gravitee.policy.transformpath.metrics.RuleSetStatistics;
 import io.gravitee.reporter.api.http.Metrics;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,15 +37,22 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import org.mockito.ArgumentCaptor;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -51,8 +64,6 @@ import static org.mockito.MockitoAnnotations.initMocks;
 @RunWith(MockitoJUnitRunner.class)
 public class TransformPathPolicyTest {
 
-    private TransformPathPolicy transformPathPolicy;
-    
     @Mock
     private TransformPathPolicyConfiguration transformPathPolicyConfiguration;
 
@@ -72,7 +83,6 @@ public class TransformPathPolicyTest {
     public void init() {
         initMocks(this);
 
-        transformPathPolicy = new TransformPathPolicy(transformPathPolicyConfiguration);
         when(request.metrics()).thenReturn(Metrics.on(System.currentTimeMillis()).build());
     }
 
@@ -87,7 +97,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         verify(policyChain).doNext(request, response);
@@ -112,7 +122,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         verify(policyChain).doNext(request, response);
@@ -137,7 +147,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
@@ -146,6 +156,32 @@ public class TransformPathPolicyTest {
         verify(executionContext).setAttribute(eq(ExecutionContext.ATTR_INVOKER), any());
     }
 
+    @Test
+    public void test_shouldTransformPath_groupArray() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/(\\w+)/(\\w+)/"), "/groups/{#group.length}/{#group[1]}"));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+
+        // Prepare inbound request
+        final HttpHeaders headers = new HttpHeaders();
+        when(request.headers()).thenReturn(headers);
+        when(request.path()).thenReturn("/products/v1/ecom/search/");
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results, the #group variable being an array as it always was
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain).doNext(argument.capture(), any(Response.class));
+        assertEquals("/groups/2/search", argument.getValue().pathInfo());
+    }
+
     @Test
     public void test_shouldTransformPath_multipleMatchingPathChange() {
         // Prepare policy configuration
@@ -165,7 +201,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
@@ -193,7 +229,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
@@ -221,7 +257,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
@@ -248,7 +284,7 @@ public class TransformPathPolicyTest {
         when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
 
         // Execute policy
-        transformPathPolicy.onRequest(request, response, executionContext, policyChain);
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
 
         // Check results
         ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
@@ -256,4 +292,268 @@ public class TransformPathPolicyTest {
         assertEquals("/products/api/v12/v12", argument.getValue().pathInfo());
         verify(executionContext).setAttribute(eq(ExecutionContext.ATTR_INVOKER), any());
     }
+
+    @Test
+    public void test_shouldTransformPath_cachedRewrite() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/(.*)"), "/product/{#group[0]}"));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+        when(transformPathPolicyConfiguration.getCacheSize()).thenReturn(10);
+
+        // Prepare inbound request
+        final HttpHeaders headers = new HttpHeaders();
+        when(request.headers()).thenReturn(headers);
+        when(request.path()).thenReturn("/products/v1/ecom/search");
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy twice, the second request being served from cache
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+        when(executionContext.getTemplateEngine()).thenThrow(new IllegalStateException("Template engine used"));
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain, times(2)).doNext(argument.capture(), any(Response.class));
+        assertEquals("/product/search", argument.getAllValues().get(0).pathInfo());
+        assertEquals("/product/search", argument.getAllValues().get(1).pathInfo());
+    }
+
+    @Test
+    public void test_invokerReusesTransformedRequest() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/(.*)"), "{#group[0]}"));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+
+        // Prepare inbound request
+        when(request.path()).thenReturn("/products/v1/ecom/search");
+
+        // Prepare context
+        Invoker invoker = mock(Invoker.class);
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+        when(executionContext.getAttribute(ExecutionContext.ATTR_INVOKER)).thenReturn(invoker);
+
+        // Execute policy
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain).doNext(argument.capture(), any(Response.class));
+        assertEquals("/search", argument.getValue().path());
+
+        ArgumentCaptor<Invoker> transformedInvoker = ArgumentCaptor.forClass(Invoker.class);
+        verify(executionContext).setAttribute(eq(ExecutionContext.ATTR_INVOKER), transformedInvoker.capture());
+
+        // The request reaching the invoker is the one handed over to the policy chain
+        transformedInvoker.getValue().invoke(executionContext, argument.getValue(), null, null);
+        verify(invoker).invoke(executionContext, argument.getValue(), null, null);
+
+        // Unless another policy wrapped it
+        transformedInvoker.getValue().invoke(executionContext, request, null, null);
+        ArgumentCaptor<Request> invoked = ArgumentCaptor.forClass(Request.class);
+        verify(invoker, times(2)).invoke(eq(executionContext), invoked.capture(), any(), any());
+        assertEquals("/search", invoked.getValue().path());
+    }
+
+    @Test
+    public void test_shouldNotStackInvokers() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/(.*)"), "{#group[0]}"));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+
+        // Prepare inbound request
+        when(request.path()).thenReturn("/products/v1/ecom/search");
+
+        // Prepare context, a transform path policy has already been applied
+        Invoker invoker = mock(Invoker.class);
+        TransformedInvoker transformedInvoker = new TransformedInvoker(invoker, "/v1/ecom/search");
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+        when(executionContext.getAttribute(ExecutionContext.ATTR_INVOKER)).thenReturn(transformedInvoker);
+
+        // Execute policy
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results
+        verify(executionContext).setAttribute(TransformPathPolicy.ATTR_PATH, "/search");
+        verify(executionContext, never()).setAttribute(eq(ExecutionContext.ATTR_INVOKER), any());
+
+        // The installed invoker reads the path of the last policy
+        when(executionContext.getAttribute(TransformPathPolicy.ATTR_PATH)).thenReturn("/search");
+        transformedInvoker.invoke(executionContext, request, null, null);
+        ArgumentCaptor<Request> invoked = ArgumentCaptor.forClass(Request.class);
+        verify(invoker).invoke(eq(executionContext), invoked.capture(), any(), any());
+        assertEquals("/search", invoked.getValue().path());
+        assertSame(request, ((TransformedRequest) invoked.getValue()).getRequest());
+
+        // Transforming a transformed request does not add a layer over the original one
+        TransformedRequest transformed = new TransformedRequest(invoked.getValue(), "/other");
+        assertSame(request, transformed.getRequest());
+    }
+
+    @Test
+    public void test_shouldChangeQueryParameters() {
+        // Prepare policy configuration
+        PathChange pathChange = new PathChange(Pattern.compile("/v1/users/(\\d+)"), "/orders");
+        pathChange.setParameters(Arrays.asList(
+                new ParameterChange("user", "{#group[0].concat('-1')}"),
+                new ParameterChange("legacy", null)));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(Collections.singletonList(pathChange));
+
+        // Prepare inbound request
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("page", "2");
+        parameters.add("legacy", "true");
+        when(request.path()).thenReturn("/products/v1/users/42");
+        when(request.parameters()).thenReturn(parameters);
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain).doNext(argument.capture(), any(Response.class));
+        assertEquals("/orders", argument.getValue().path());
+        assertEquals("42-1", argument.getValue().parameters().getFirst("user"));
+        assertEquals("2", argument.getValue().parameters().getFirst("page"));
+        assertFalse(argument.getValue().parameters().containsKey("legacy"));
+        assertTrue(parameters.containsKey("legacy"));
+        assertEquals("/orders?page=2&user=42-1", argument.getValue().uri());
+    }
+
+    @Test
+    public void test_shouldRewriteUri_changedParameters() {
+        // Prepare policy configuration
+        PathChange pathChange = new PathChange(Pattern.compile("/v1/users/(\\d+)"), "/orders");
+        pathChange.setParameters(Arrays.asList(
+                new ParameterChange("user", "{#group[0]} 1"),
+                new ParameterChange("legacy", null)));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(Collections.singletonList(pathChange));
+
+        // Prepare inbound request
+        when(request.path()).thenReturn("/products/v1/users/42");
+        when(request.uri()).thenReturn("/products/v1/users/42?q=red%20shoes&legacy=true&user=me");
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results, the untouched parameter keeping its original encoding
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain).doNext(argument.capture(), any(Response.class));
+        assertEquals("/orders?q=red%20shoes&user=42+1", argument.getValue().uri());
+    }
+
+    @Test
+    public void test_shouldRewriteUri() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/(.*)"), "/product/{#group[0]}"));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+
+        // Prepare inbound request
+        when(request.path()).thenReturn("/products/v1/ecom/search");
+        when(request.uri()).thenReturn("/products/v1/ecom/search?q=red%20shoes&page=2");
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results, the uri being built once
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain).doNext(argument.capture(), any(Response.class));
+        assertEquals("/product/search?q=red%20shoes&page=2", argument.getValue().uri());
+        assertSame(argument.getValue().uri(), argument.getValue().uri());
+        verify(request).uri();
+    }
+
+    @Test
+    public void test_shouldApplyStages() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(stage(2, new PathChange(Pattern.compile("/(.*)"), "/acme/{#group[0]}")));
+        pathChanges.add(stage(0, new PathChange(Pattern.compile("(.*)/"), "{#group[0]}")));
+        pathChanges.add(stage(1, new PathChange(Pattern.compile("/v1/(.*)"), "/v2/{#group[0]}")));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+        when(transformPathPolicyConfiguration.getMaxIterations()).thenReturn(3);
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy, the first stage not matching the second path
+        when(request.path()).thenReturn("/products/v1/ecom/");
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+        when(request.path()).thenReturn("/products/v1/ecom");
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Then with fewer iterations than stages
+        when(transformPathPolicyConfiguration.getMaxIterations()).thenReturn(2);
+        when(request.path()).thenReturn("/products/v1/ecom/");
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results
+        ArgumentCaptor<Request> argument = ArgumentCaptor.forClass(Request.class);
+        verify(policyChain, times(3)).doNext(argument.capture(), any(Response.class));
+        assertEquals("/acme/v2/ecom", argument.getAllValues().get(0).path());
+        assertEquals("/acme/v2/ecom", argument.getAllValues().get(1).path());
+        assertEquals("/v2/ecom", argument.getAllValues().get(2).path());
+    }
+
+    private static PathChange stage(int stage, PathChange pathChange) {
+        pathChange.setStage(stage);
+        return pathChange;
+    }
+
+    @Test
+    public void test_shouldRecordMetrics() {
+        // Prepare policy configuration
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/"), "/product1"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/(.*)"), "/product2/{#group[0]}"));
+
+        when(transformPathPolicyConfiguration.getPathChanges()).thenReturn(pathChanges);
+        when(transformPathPolicyConfiguration.isMetricsEnabled()).thenReturn(true);
+
+        // Prepare context
+        when(executionContext.getTemplateEngine()).thenReturn(new SpelTemplateEngine());
+        when(executionContext.getAttribute(ExecutionContext.ATTR_CONTEXT_PATH)).thenReturn("/products");
+
+        // Execute policy
+        when(request.path()).thenReturn("/products/v1/ecom/search");
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+        when(request.path()).thenReturn("/products/v2/ecom/search");
+        new TransformPathPolicy(transformPathPolicyConfiguration).onRequest(request, response, executionContext, policyChain);
+
+        // Check results
+        RuleSetStatistics statistics = RuleSetCache.get(transformPathPolicyConfiguration).getStatistics();
+        assertEquals(0, statistics.getRule(0).getHits());
+        assertEquals(1, statistics.getRule(1).getHits());
+        assertEquals(1, statistics.getRule(1).getMatchLatency().getCount());
+        assertEquals(1, statistics.getMisses());
+        verify(executionContext).setAttribute(TransformPathPolicy.ATTR_RULE, 1);
+    }
 }
@@ -42,6 +42,33 @@ public class TransformPathPolicyConfigurationTest {
         load("/io/gravitee/policy/transformpath/configuration/configuration2.json");
     }
 
+    @Test
+    public void testConfiguration_routeTemplate() throws IOException {
+        TransformPathPolicyConfiguration configuration =
+                load("/io/gravitee/policy/transformpath/configuration/configuration3.json");
+
+        Assert.assertEquals(2, configuration.getPathChanges().size());
+        Assert.assertEquals("/v1/users/{id}/orders", configuration.getPathChanges().get(0).getTemplate().getSource());
+        Assert.assertNull(configuration.getPathChanges().get(0).getPattern());
+        Assert.assertNull(configuration.getPathChanges().get(1).getTemplate());
+
+        Assert.assertEquals(2, configuration.getPathChanges().get(0).getParameters().size());
+        Assert.assertEquals("acme", configuration.getPathChanges().get(0).getParameters().get(0).getValue());
+        Assert.assertNull(configuration.getPathChanges().get(0).getParameters().get(1).getValue());
+        Assert.assertNull(configuration.getPathChanges().get(1).getParameters());
+    }
+
+    @Test
+    public void testConfiguration_sharedPatterns() throws IOException {
+        TransformPathPolicyConfiguration first =
+                load("/io/gravitee/policy/transformpath/configuration/configuration3.json");
+        TransformPathPolicyConfiguration second =
+                load("/io/gravitee/policy/transformpath/configuration/configuration3.json");
+
+        Assert.assertSame(first.getPathChanges().get(0).getTemplate(), second.getPathChanges().get(0).getTemplate());
+        Assert.assertSame(first.getPathChanges().get(1).getPattern(), second.getPathChanges().get(1).getPattern());
+    }
+
     private TransformPathPolicyConfiguration load(String resource) throws IOException {
         URL jsonFile = this.getClass().getResource(resource);
         return objectMapper().readValue(jsonFile, TransformPathPolicyConfiguration.class);
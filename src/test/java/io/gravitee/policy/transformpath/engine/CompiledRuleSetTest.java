@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.policy.transformpath.configuration.HeaderCondition;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.RegexEngine;
+import io.gravitee.policy.transformpath.configuration.RouteTemplate;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CompiledRuleSetTest {
+
+    @Test
+    public void test_literals() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/legacy/product-1"), "/catalog/items/1"));
+        pathChanges.add(new PathChange(Pattern.compile("/legacy/(.*)"), "/catalog/{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("^/legacy/product-2$"), "/catalog/items/2"));
+        pathChanges.add(new PathChange(Pattern.compile("/other/product-3"), "/catalog/items/3"));
+        pathChanges.add(new PathChange(Pattern.compile("/legacy/product-1"), "/never"));
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges);
+        assertEquals(3, ruleSet.getLiterals().size());
+
+        assertEquals(0, ruleSet.match("/legacy/product-1").getIndex());
+        // An earlier pattern takes precedence over a literal
+        assertEquals(1, ruleSet.match("/legacy/product-2").getIndex());
+        assertEquals(3, ruleSet.match("/other/product-3").getIndex());
+        assertEquals("/other/product-3", ruleSet.match("/other/product-3").group(0));
+        assertEquals(0, ruleSet.match(new SubPath("/api/other/product-3", 4)).groupCount());
+        assertNull(ruleSet.match("/other/product-4"));
+    }
+
+    @Test
+    public void test_pathMappings() {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        for (int idx = 0; idx < 1000; idx++) {
+            mappings.put("/legacy/product-" + idx, "/catalog/items/" + (idx % 10));
+        }
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setPathMappings(mappings);
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(Collections.emptyList(), options);
+        assertFalse(ruleSet.isEmpty());
+        assertEquals(1000, ruleSet.getMappings().size());
+        assertEquals("/catalog/items/4", ruleSet.map("/legacy/product-994"));
+        assertEquals("/catalog/items/4", ruleSet.map(new SubPath("/api/legacy/product-994", 4)));
+        assertNull(ruleSet.map("/legacy/product-1000"));
+        assertTrue(ruleSet.getLiteralFootprint() > 0);
+    }
+
+    @Test
+    public void test_literalPrefix() {
+        assertEquals("/v1/ecom/", PatternAnalyzer.literalPrefix(Pattern.compile("/v1/ecom/(.*)")));
+        assertEquals("/v1/ecom", PatternAnalyzer.literalPrefix(Pattern.compile("^/v1/ecom")));
+        assertEquals("/api/", PatternAnalyzer.literalPrefix(Pattern.compile("/api/(?<version>v[0-9]+)/stores.*")));
+        assertEquals("/v1/item", PatternAnalyzer.literalPrefix(Pattern.compile("/v1/items?")));
+        assertEquals("/v1.0/", PatternAnalyzer.literalPrefix(Pattern.compile("/v1\\.0/\\d+")));
+        assertEquals("", PatternAnalyzer.literalPrefix(Pattern.compile("/v1/a|/v2/b")));
+        assertEquals("", PatternAnalyzer.literalPrefix(Pattern.compile("/v1/a", Pattern.CASE_INSENSITIVE)));
+        assertEquals("/v1/", PatternAnalyzer.literalPrefix(Pattern.compile("/v1/(a|b)")));
+        assertEquals("/v1/", PatternAnalyzer.literalPrefix(Pattern.compile("/v1/[|]")));
+    }
+
+    @Test
+    public void test_noRules() {
+        assertNull(CompiledRuleSet.compile(null).match("/v1/ecom/"));
+        assertNull(CompiledRuleSet.compile(new ArrayList<>()).match("/v1/ecom/"));
+    }
+
+    @Test
+    public void test_firstMatchWins() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/subpath"), "/product1"));
+        pathChanges.add(new PathChange(Pattern.compile(".*/subpath"), "/product2"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/.*"), "/product3"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/.*"), "/product4"));
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges);
+
+        assertEquals(0, ruleSet.match("/v1/ecom/subpath").getIndex());
+        assertEquals(1, ruleSet.match("/v1/other/subpath").getIndex());
+        assertEquals(2, ruleSet.match("/v1/ecom/other").getIndex());
+        assertEquals(3, ruleSet.match("/v1/other").getIndex());
+        assertNull(ruleSet.match("/v2/other"));
+    }
+
+    @Test
+    public void test_sharedPrefixes() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        for (int idx = 0; idx < 200; idx++) {
+            pathChanges.add(new PathChange(Pattern.compile("/api/resource" + idx + "/(.*)"), "/target" + idx));
+        }
+
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges);
+
+        assertEquals(1, ruleSet.match("/api/resource1/x").getIndex());
+        assertEquals(12, ruleSet.match("/api/resource12/x").getIndex());
+        assertEquals(199, ruleSet.match("/api/resource199/x").getIndex());
+        assertNull(ruleSet.match("/api/resource200/x"));
+        assertNull(ruleSet.match("/api/resource"));
+    }
+
+    @Test
+    public void test_matchExposesGroups() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/(?<resource>[^/]+)/(\\d+)"), "/product"));
+
+        RuleMatch match = CompiledRuleSet.compile(pathChanges).match("/v1/stores/42");
+
+        assertEquals(0, match.getIndex());
+        assertEquals(2, match.groupCount());
+        assertEquals("stores", match.group(1));
+        assertEquals("42", match.group(2));
+        assertEquals("stores", match.group("resource"));
+    }
+
+    @Test
+    public void test_linearEngine() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/(?<resource>[^/]+)/(\\d+)"), "/product"));
+        // Back-references are not supported by the linear engine, the JDK one is used instead
+        pathChanges.add(new PathChange(Pattern.compile("/v2/(\\w+)/\\1"), "/twice"));
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setRegexEngine(RegexEngine.LINEAR);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+
+        RuleMatch match = ruleSet.match("/v1/stores/42");
+        assertEquals(0, match.getIndex());
+        assertEquals("stores", match.group("resource"));
+        assertEquals("42", match.group(2));
+        assertEquals(1, ruleSet.match("/v2/x/x").getIndex());
+        assertNull(ruleSet.match("/v2/x/y"));
+    }
+
+    @Test
+    public void test_linearEngineRepeatedGroups() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1(/\\w+)+"), "/segments"));
+        pathChanges.add(new PathChange(Pattern.compile("/v2(/\\w+)+"), "/last{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("/v3(?:/(?<id>\\w+))+"), "/ids/{#groupName['id']}"));
+        pathChanges.add(new PathChange(Pattern.compile("/v4/(\\w+)(/\\w+)+"), "/first/{#group[0]}"));
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setRegexEngine(RegexEngine.LINEAR);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+
+        // Repeated groups read by the rule are captured by the JDK engine
+        assertTrue(ruleSet.getRule(0).isLinear());
+        assertFalse(ruleSet.getRule(1).isLinear());
+        assertFalse(ruleSet.getRule(2).isLinear());
+        assertTrue(ruleSet.getRule(3).isLinear());
+        assertEquals("/c", ruleSet.match("/v2/a/b/c").group(1));
+    }
+
+    @Test
+    public void test_matchStepLimit() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/(.*a){12}b"), "/hostile"));
+        pathChanges.add(new PathChange(Pattern.compile("/.*"), "/fallback"));
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setMatchStepLimit(100000);
+        options.setMetricsEnabled(true);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+
+        assertEquals(0, ruleSet.match("/aaaaaaaaaaaab").getIndex());
+        assertEquals(0, ruleSet.getRule(0).getBudgetExceededCount());
+
+        // Exponential backtracking on the first rule, aborted
+        assertEquals(1, ruleSet.match("/aaaaaaaaaaaaaaaaaaaaaaaa!b").getIndex());
+        assertEquals(1, ruleSet.getRule(0).getBudgetExceededCount());
+        assertEquals(0, ruleSet.getRule(1).getBudgetExceededCount());
+        assertEquals(1, ruleSet.getStatistics().getRule(0).getBudgetExceeded());
+
+        // Logged once, counted every time
+        ruleSet.match("/aaaaaaaaaaaaaaaaaaaaaaaa!b");
+        assertEquals(2, ruleSet.getStatistics().getRule(0).getBudgetExceeded());
+    }
+
+    @Test
+    public void test_adaptiveOrder() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/users/(\\d+)"), "/users"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/users/.*"), "/any-user"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/orders/(\\d+)"), "/orders"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/.*"), "/any"));
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setAdaptiveOrderInterval(10);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, ruleSet.getOrder());
+
+        // Orders computed as soon as due
+        List<Runnable> reorders = new ArrayList<>();
+        AdaptiveOrder.executor = reorders::add;
+        try {
+            for (int idx = 0; idx < 10; idx++) {
+                assertEquals(1, ruleSet.match("/v1/users/me").getIndex());
+            }
+            for (int idx = 0; idx < 20; idx++) {
+                assertEquals(2, ruleSet.match("/v1/orders/" + idx).getIndex());
+                reorders.forEach(Runnable::run);
+                reorders.clear();
+            }
+        } finally {
+            AdaptiveOrder.executor = AdaptiveOrder.REORDERER;
+        }
+
+        // Orders are disjoint from users, but the catch-all rule must stay last
+        assertArrayEquals(new int[] { 2, 0, 1, 3 }, ruleSet.getOrder());
+        assertEquals(0, ruleSet.match("/v1/users/42").getIndex());
+        assertEquals(1, ruleSet.match("/v1/users/me").getIndex());
+        assertEquals(3, ruleSet.match("/v1/orders/me").getIndex());
+    }
+
+    @Test
+    public void test_adaptiveOrderInBackground() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/users/(\\d+)"), "/users"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/orders/(\\d+)"), "/orders"));
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setAdaptiveOrderInterval(1);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+
+        List<Runnable> reorders = new ArrayList<>();
+        AdaptiveOrder.executor = reorders::add;
+        try {
+            // Matches keep using the current order while the new one is pending, and request no other
+            for (int idx = 0; idx < 5; idx++) {
+                assertEquals(1, ruleSet.match("/v1/orders/" + idx).getIndex());
+            }
+            assertEquals(1, reorders.size());
+            assertArrayEquals(new int[] { 0, 1 }, ruleSet.getOrder());
+
+            reorders.get(0).run();
+            assertArrayEquals(new int[] { 1, 0 }, ruleSet.getOrder());
+
+            // Then the next one may be requested
+            assertEquals(1, ruleSet.match("/v1/orders/5").getIndex());
+            assertEquals(2, reorders.size());
+        } finally {
+            AdaptiveOrder.executor = AdaptiveOrder.REORDERER;
+        }
+    }
+
+    @Test
+    public void test_stages() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/(.*)"), "/v2/{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("/v2/orders/(\\d+)"), "/orders/{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("(.*)/"), "{#group[0]}"));
+        pathChanges.get(0).setStage(1);
+        pathChanges.get(1).setStage(2);
+
+        // Stages are ignored unless enabled
+        assertNull(CompiledRuleSet.compile(pathChanges).getNextStage());
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setMaxIterations(3);
+        options.setMetricsEnabled(true);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+
+        assertEquals(1, ruleSet.size());
+        assertEquals(2, ruleSet.match("/v1/orders/42/").getIndex());
+        assertEquals(0, ruleSet.getNextStage().match("/v1/orders/42").getIndex());
+        assertEquals(1, ruleSet.getNextStage().getNextStage().match("/v2/orders/42").getIndex());
+        assertNull(ruleSet.getNextStage().getNextStage().getNextStage());
+
+        // Statistics cover the path changes of all the stages
+        assertSame(ruleSet.getStatistics(), ruleSet.getNextStage().getStatistics());
+        assertEquals(3, ruleSet.getStatistics().size());
+    }
+
+    @Test
+    public void test_conditions() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/orders/(.*)"), "/v2/orders"));
+        pathChanges.get(0).setMethods(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD));
+        pathChanges.get(0).setHeaders(Collections.singletonList(new HeaderCondition("X-Api-Version", "2")));
+        pathChanges.add(new PathChange(null, "/tenant/orders"));
+        pathChanges.get(1).setTemplate(RouteTemplate.parse("/orders/{id}"));
+        pathChanges.get(1).setHeaders(Collections.singletonList(new HeaderCondition("X-Tenant", null)));
+        pathChanges.add(new PathChange(Pattern.compile("/orders/.*"), "/acme/orders"));
+        pathChanges.get(2).setHost("Acme.example.com");
+        pathChanges.add(new PathChange(Pattern.compile("/orders/.*"), "/orders"));
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setCacheSize(10);
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(pathChanges, options);
+
+        assertEquals(0, ruleSet.match("/orders/42", request(HttpMethod.GET, "X-Api-Version", "2")).getIndex());
+        assertEquals(3, ruleSet.match("/orders/42", request(HttpMethod.POST, "X-Api-Version", "2")).getIndex());
+        assertEquals(3, ruleSet.match("/orders/42", request(HttpMethod.GET, "X-Api-Version", "1")).getIndex());
+        assertEquals(1, ruleSet.match("/orders/42", request(HttpMethod.POST, "X-Tenant", "acme")).getIndex());
+        assertEquals(2, ruleSet.match("/orders/42", request(HttpMethod.PUT, "Host", "acme.example.com:8443")).getIndex());
+        assertEquals(3, ruleSet.match("/orders/42", request(null, "Host", "other.example.com")).getIndex());
+
+        // Conditions are ignored without request, and the rewrite is not cached as it depends on the request
+        assertEquals(0, ruleSet.match("/orders/42").getIndex());
+        assertNull(ruleSet.getRewriteCache());
+    }
+
+    private static Request request(HttpMethod method, String header, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(header, value);
+
+        Request request = mock(Request.class);
+        when(request.method()).thenReturn(method);
+        when(request.headers()).thenReturn(headers);
+        return request;
+    }
+
+    @Test
+    public void test_namedGroups() {
+        NamedGroups namedGroups = PatternAnalyzer.namedGroups(
+                Pattern.compile("/(v[0-9]+)/(?<resource>[^/(]+)/(?:x|y)/(?<id>\\d+)(?<=\\d)\\(\\Q(?<no>\\E"));
+
+        assertEquals(2, namedGroups.size());
+        assertEquals(2, namedGroups.indexOf("resource"));
+        assertEquals(3, namedGroups.indexOf("id"));
+        assertEquals(-1, namedGroups.indexOf("no"));
+    }
+
+    @Test
+    public void test_namedGroupsView() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/(?<version>v[0-9]+)/(?<resource>[^/]+)(?<extra>/x)?"), "/product"));
+
+        Map<String, String> namedGroups = CompiledRuleSet.compile(pathChanges).match("/v2/stores").namedGroups();
+
+        assertEquals(3, namedGroups.size());
+        assertEquals("v2", namedGroups.get("version"));
+        assertEquals("stores", namedGroups.get("resource"));
+        assertNull(namedGroups.get("extra"));
+        assertNull(namedGroups.get("unknown"));
+        assertFalse(namedGroups.containsKey("unknown"));
+        assertEquals("{extra=null, resource=stores, version=v2}", namedGroups.toString());
+    }
+}
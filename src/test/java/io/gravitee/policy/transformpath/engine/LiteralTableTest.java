@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class LiteralTableTest {
+
+    @Test
+    public void test_lookup() {
+        LiteralTable table = new LiteralTable(100_000);
+        for (int idx = 0; idx < 100_000; idx++) {
+            assertTrue(table.put("/legacy/product-" + idx, idx));
+        }
+
+        assertEquals(100_000, table.size());
+        assertEquals(262_144, table.capacity());
+        for (int idx = 0; idx < 100_000; idx += 97) {
+            assertEquals(idx, table.get("/legacy/product-" + idx));
+            assertEquals(idx, table.get(new StringBuilder("/legacy/product-").append(idx)));
+        }
+        assertEquals(LiteralTable.NOT_FOUND, table.get("/legacy/product-100000"));
+        assertEquals(LiteralTable.NOT_FOUND, table.get(""));
+    }
+
+    @Test
+    public void test_firstValueKept() {
+        LiteralTable table = new LiteralTable(2);
+        assertTrue(table.put("/a", 0));
+        assertFalse(table.put("/a", 1));
+
+        assertEquals(0, table.get("/a"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void test_footprint() {
+        LiteralTable table = new LiteralTable(1000);
+        for (int idx = 0; idx < 1000; idx++) {
+            table.put("/legacy/product-" + idx, idx);
+        }
+
+        // Slots and strings, far below the per entry overhead of a HashMap of boxed values
+        long footprint = table.footprint();
+        assertTrue(String.valueOf(footprint), footprint > 2048 * 12);
+        assertTrue(String.valueOf(footprint), footprint < 2048 * 12 + 1000 * 96);
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class OverlapAnalyzerTest {
+
+    @Test
+    public void test_analyze() {
+        OverlapAnalyzer analyzer = analyzer(
+                "/v1/users/.*",
+                "/v1/orders/.*",
+                "/v1/.*/x",
+                "/v1/\\d{2}",
+                "/v1/\\d{5}",
+                "/v1/[a-z]+",
+                "/v1/[a-z]+\\d",
+                "/v1/(?:users|orders)/(\\d+)",
+                "/v1/x(?=y).*");
+
+        assertEquals(OverlapAnalyzer.Overlap.DISJOINT_PREFIX, analyzer.analyze(0, 1));
+        assertEquals(OverlapAnalyzer.Overlap.MAY_OVERLAP, analyzer.analyze(0, 2));
+        assertEquals(OverlapAnalyzer.Overlap.DISJOINT_LENGTH, analyzer.analyze(3, 4));
+        assertEquals(OverlapAnalyzer.Overlap.DISJOINT_AUTOMATON, analyzer.analyze(3, 5));
+        assertEquals(OverlapAnalyzer.Overlap.DISJOINT_AUTOMATON, analyzer.analyze(5, 6));
+        assertEquals(OverlapAnalyzer.Overlap.MAY_OVERLAP, analyzer.analyze(0, 7));
+        assertEquals(OverlapAnalyzer.Overlap.DISJOINT_AUTOMATON, analyzer.analyze(2, 7));
+        // Look-arounds are not supported by the automaton
+        assertEquals(OverlapAnalyzer.Overlap.MAY_OVERLAP, analyzer.analyze(5, 8));
+    }
+
+    private OverlapAnalyzer analyzer(String... patterns) {
+        List<PathChange> pathChanges = new ArrayList<>();
+        for (String pattern : patterns) {
+            pathChanges.add(new PathChange(Pattern.compile(pattern), "/target"));
+        }
+        return new OverlapAnalyzer(CompiledRuleSet.compile(pathChanges));
+    }
+}
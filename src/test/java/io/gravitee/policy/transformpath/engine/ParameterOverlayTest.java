@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.gateway.api.expression.TemplateEngine;
+import io.gravitee.policy.transformpath.configuration.ParameterChange;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ParameterOverlayTest {
+
+    @Test
+    public void test_overlay() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("page", "2");
+        parameters.add("legacy", "true");
+        parameters.add("user", "anonymous");
+        parameters.add("user", "guest");
+
+        MultiValueMap<String, String> overlay = changes().applyTo(parameters);
+
+        assertEquals(Collections.singletonList("42"), overlay.get("user"));
+        assertEquals("2", overlay.getFirst("page"));
+        assertNull(overlay.get("legacy"));
+        assertFalse(overlay.containsKey("legacy"));
+        assertTrue(overlay.containsKey("tenant"));
+        assertEquals(3, overlay.size());
+        assertEquals(Arrays.asList("page", "user", "tenant"), Arrays.asList(overlay.keySet().toArray()));
+
+        // The original parameters are left untouched
+        assertEquals(3, parameters.size());
+        assertEquals(Arrays.asList("anonymous", "guest"), parameters.get("user"));
+    }
+
+    @Test
+    public void test_modification() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("legacy", "true");
+
+        MultiValueMap<String, String> overlay = changes().applyTo(parameters);
+        overlay.add("user", "43");
+        overlay.remove("tenant");
+
+        assertEquals(Arrays.asList("42", "43"), overlay.get("user"));
+        assertFalse(overlay.containsKey("tenant"));
+        assertEquals(1, overlay.size());
+        assertEquals(Collections.singletonList("true"), parameters.get("legacy"));
+    }
+
+    @Test
+    public void test_noParameters() {
+        MultiValueMap<String, String> overlay = changes().applyTo(null);
+
+        assertEquals(2, overlay.size());
+        assertEquals("acme", overlay.toSingleValueMap().get("tenant"));
+    }
+
+    @Test
+    public void test_query() {
+        // Untouched parameters keep their raw form, changed ones only are encoded again
+        assertEquals("q=red%20shoes&user=42&page=2&f=a%2Cb&tenant=acme",
+                changes().applyToQuery("q=red%20shoes&user=anonymous&page=2&legacy=true&f=a%2Cb&user=guest"));
+        assertEquals("user=42&tenant=acme", changes().applyToQuery(null));
+        assertEquals("flag&%zz=1&user=42&tenant=acme", changes().applyToQuery("flag&%zz=1&leg%61cy"));
+    }
+
+    private ParameterChanges changes() {
+        PathChange pathChange = new PathChange(Pattern.compile("/users/(\\d+)"), "/orders");
+        pathChange.setParameters(Arrays.asList(
+                new ParameterChange("user", "{#group[0]}"),
+                new ParameterChange("legacy", null),
+                new ParameterChange("tenant", "acme")));
+
+        RuleMatch match = CompiledRuleSet.compile(Collections.singletonList(pathChange)).match("/users/42");
+        return match.getRule().getParameterTemplate().render(match, mock(TemplateEngine.class));
+    }
+}
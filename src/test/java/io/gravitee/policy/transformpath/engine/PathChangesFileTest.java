@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.configuration.ValidationMode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class PathChangesFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test_reload() throws IOException {
+        File file = folder.newFile("path-changes.json");
+        write(file, "[ { \"pattern\": \"/v1/(.*)\", \"path\": \"/v2/{#group[0]}\" } ]", 1000);
+
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChangesFile(file.getPath());
+
+        List<CompiledRuleSet> loaded = new ArrayList<>();
+        PathChangesFile pathChangesFile = new PathChangesFile(configuration, loaded::add);
+        CompiledRuleSet first = pathChangesFile.current();
+        assertEquals(1, first.size());
+        assertEquals(0, first.match("/v1/users").getRule().getIndex());
+
+        // Unmodified, the file is not loaded again
+        pathChangesFile.reload();
+        assertSame(first, pathChangesFile.current());
+
+        write(file, "[ { \"pattern\": \"/v2/(.*)\", \"path\": \"/v3/{#group[0]}\" }, "
+                + "{ \"pattern\": \"/v1/(.*)\", \"path\": \"/v2/{#group[0]}\" } ]", 2000);
+        pathChangesFile.reload();
+        CompiledRuleSet second = pathChangesFile.current();
+        assertEquals(2, second.size());
+        assertEquals(1, second.match("/v1/users").getRule().getIndex());
+
+        // The previous rule set is left untouched for the requests still using it
+        assertEquals(1, first.size());
+        assertEquals(2, loaded.size());
+        assertSame(second, loaded.get(1));
+    }
+
+    @Test
+    public void test_invalidFileKeepsRules() throws IOException {
+        File file = folder.newFile("path-changes.json");
+        write(file, "[ { \"pattern\": \"/v1/(.*)\", \"path\": \"/v2/{#group[0]}\" } ]", 1000);
+
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChangesFile(file.getPath());
+        PathChangesFile pathChangesFile = new PathChangesFile(configuration, ruleSet -> { });
+        CompiledRuleSet first = pathChangesFile.current();
+
+        write(file, "[ { \"pattern\": \"/v1/(.*\", \"path\": \"/v2\" } ]", 2000);
+        pathChangesFile.reload();
+
+        assertSame(first, pathChangesFile.current());
+    }
+
+    @Test
+    public void test_missingFile() {
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChangesFile(new File(folder.getRoot(), "missing.json").getPath());
+
+        PathChangesFile pathChangesFile = new PathChangesFile(configuration, ruleSet -> { });
+        assertTrue(pathChangesFile.current().isEmpty());
+        assertNull(pathChangesFile.current().match("/v1/users"));
+
+        configuration.setValidation(ValidationMode.STRICT);
+        try {
+            new PathChangesFile(configuration, ruleSet -> { });
+            throw new AssertionError("The missing file should be reported");
+        } catch (IllegalArgumentException iae) {
+            assertTrue(iae.getMessage().contains("missing.json"));
+        }
+    }
+
+    @Test
+    public void test_ruleSetCache() throws IOException {
+        File file = folder.newFile("path-changes.json");
+        write(file, "[ { \"pattern\": \"/v1/(.*)\", \"path\": \"/v2/{#group[0]}\" } ]", 1000);
+
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChangesFile(file.getPath());
+
+        CompiledRuleSet ruleSet = RuleSetCache.get(configuration);
+        assertEquals(1, ruleSet.size());
+        assertSame(ruleSet, RuleSetCache.get(configuration));
+
+        // The file is not loaded again when named differently
+        configuration.setPathChangesFile(folder.getRoot() + "/./path-changes.json");
+        assertSame(ruleSet, RuleSetCache.get(configuration));
+    }
+
+    @Test
+    public void test_ruleSetCacheRejection() throws IOException {
+        File file = folder.newFile("path-changes.json");
+        write(file, "[ { \"pattern\": \"/v1/(.*\", \"path\": \"/v2\" } ]", 1000);
+
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChangesFile(file.getPath());
+        configuration.setValidation(ValidationMode.STRICT);
+
+        // Loaded once, the same rejection being rethrown until the file is modified
+        IllegalArgumentException first = reject(configuration);
+        assertSame(first.getCause(), reject(configuration).getCause());
+
+        write(file, "[ { \"pattern\": \"/v1/(.*)\", \"path\": \"/v2/{#group[0]}\" } ]", 2000);
+        assertEquals(1, RuleSetCache.get(configuration).size());
+    }
+
+    private static IllegalArgumentException reject(TransformPathPolicyConfiguration configuration) {
+        try {
+            RuleSetCache.get(configuration);
+            throw new AssertionError("The path changes file should be rejected");
+        } catch (IllegalArgumentException iae) {
+            return iae;
+        }
+    }
+
+    private static void write(File file, String content, long modified) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        // File systems may not tell two writes in the same second apart
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(modified));
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.gateway.api.expression.TemplateEngine;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class PathTemplateTest {
+
+    private static final Pattern PATTERN = Pattern.compile("/api/(?<version>v[0-9]+)/(\\w+)(/x)?");
+
+    private final TemplateEngine templateEngine = mock(TemplateEngine.class);
+
+    @Test
+    public void test_literal() {
+        assertEquals("/products", render("/products", "/api/v1/stores"));
+        verify(templateEngine, never()).convert(anyString());
+    }
+
+    @Test
+    public void test_groupReferences() {
+        assertEquals("/products/v1/stores/v1",
+                render("/products/{#group[0]}/{ #group [1] }/{#groupName['version']}", "/api/v1/stores"));
+        assertEquals("/products//", render("/products/{#group[2]}/{#groupName[\"unknown\"]}", "/api/v1/stores"));
+        verify(templateEngine, never()).convert(anyString());
+    }
+
+    @Test
+    public void test_expressions() {
+        when(templateEngine.convert("{#request.headers['X-Tenant'][0]}")).thenReturn("acme");
+        when(templateEngine.convert("{#group[3]}")).thenReturn("out-of-range");
+
+        assertEquals("/acme/v1/stores", render("/{#request.headers['X-Tenant'][0]}/{#group[0]}/{#group[1]}", "/api/v1/stores"));
+        assertEquals("/out-of-range", render("/{#group[3]}", "/api/v1/stores"));
+    }
+
+    @Test
+    public void test_malformedTemplate() {
+        when(templateEngine.convert("/products/{#group[0]")).thenReturn("malformed");
+
+        assertEquals("/malformed", render("/products/{#group[0]", "/api/v1/stores"));
+        assertTrue(PathTemplate.compile("/products/{}", 1).isExpression());
+    }
+
+    @Test
+    public void test_isExpression() {
+        assertFalse(PathTemplate.compile("/products/{#group[0]}", 1).isExpression());
+        assertTrue(PathTemplate.compile("/products/{#group[0]}", 0).isExpression());
+        assertTrue(PathTemplate.compile("/products/{#request.id}", 0).isExpression());
+    }
+
+    @Test
+    public void test_usedVariables() {
+        PathTemplate literal = PathTemplate.compile("/products/{#group[0]}/{#groupName['id']}", 1);
+        assertFalse(literal.usesGroups());
+        assertFalse(literal.usesGroupNames());
+
+        PathTemplate groups = PathTemplate.compile("/{#group[0].toUpperCase()}/{#request.id}", 1);
+        assertTrue(groups.usesGroups());
+        assertFalse(groups.usesGroupNames());
+
+        PathTemplate groupNames = PathTemplate.compile("/{#groupName['id'] ?: 'none'}", 1);
+        assertFalse(groupNames.usesGroups());
+        assertTrue(groupNames.usesGroupNames());
+
+        assertFalse(PathTemplate.compile(null, 1).usesGroups());
+    }
+
+    @Test
+    public void test_groups() {
+        RuleMatch match = CompiledRuleSet.compile(
+                Collections.singletonList(new PathChange(PATTERN, "/"))).match("/api/v1/stores");
+
+        assertArrayEquals(new String[] { "v1", "stores", null }, match.groups());
+    }
+
+    private String render(String template, String path) {
+        RuleMatch match = CompiledRuleSet.compile(
+                Collections.singletonList(new PathChange(PATTERN, template))).match(path);
+        return match.getRule().getTemplate().render(match, templateEngine);
+    }
+}
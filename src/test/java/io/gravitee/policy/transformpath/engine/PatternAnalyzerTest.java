@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class PatternAnalyzerTest {
+
+    private static final String[] PATTERNS = {
+            "/v1/ecom/",
+            "/v1/ecom/(.*)",
+            "/api/(?<version>v[0-9]+)/stores.*",
+            "/v1/items?/\\d{2,4}",
+            "/v1/(a|bc)/x\\Q.y\\E?",
+            "/(?:users|groups)/[^/]+/members(/\\d+)?",
+            "/a{3}/(?=b)b+",
+            "/x(y)\\1",
+            ".*/orders/(\\w+)/lines",
+            "/\\p{Alpha}+/\\x{1F600}?",
+            "/(?i)upper",
+            "/emoji/😀?/end"
+    };
+
+    private static final String[] PATHS = {
+            "", "/", "/v1/ecom/", "/v1/ecom/search", "/api/v12/stores", "/api/v12/storesX", "/v1/item/12",
+            "/v1/items/1234", "/v1/items/12345", "/v1/a/x.y", "/v1/bc/x.", "/users/john/members",
+            "/groups/g/members/42", "/aaa/bbb", "/xyy", "/a/b/orders/123/lines", "/orders/1/lines",
+            "/abc/", "/abc/😀", "/UPPER", "/upper", "/emoji//end", "/emoji/😀/end"
+    };
+
+    @Test
+    public void test_prefilterNeverRejectsAMatch() {
+        for (String regex : PATTERNS) {
+            Pattern pattern = Pattern.compile(regex);
+            Prefilter prefilter = PatternAnalyzer.prefilter(pattern);
+            for (String path : PATHS) {
+                if (pattern.matcher(path).matches()) {
+                    assertTrue(regex + " rejected " + path, prefilter.accepts(path));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_lengthBounds() {
+        Prefilter prefilter = PatternAnalyzer.prefilter(Pattern.compile("/v1/items?/\\d{2,4}"));
+        assertEquals(11, prefilter.getMinLength());
+        assertEquals(18, prefilter.getMaxLength());
+
+        prefilter = PatternAnalyzer.prefilter(Pattern.compile("/v1/ecom/"));
+        assertEquals(9, prefilter.getMinLength());
+        assertEquals(9, prefilter.getMaxLength());
+        assertFalse(prefilter.accepts("/v1/ecom/search"));
+
+        prefilter = PatternAnalyzer.prefilter(Pattern.compile("/v1/ecom/(.*)"));
+        assertEquals(Prefilter.UNBOUNDED, prefilter.getMaxLength());
+    }
+
+    @Test
+    public void test_requiredLiterals() {
+        Prefilter prefilter = PatternAnalyzer.prefilter(Pattern.compile(".*/orders/(\\w+)/lines"));
+        assertArrayEquals(new String[] { "/orders/", "/lines" }, prefilter.getRequiredLiterals());
+        assertFalse(prefilter.accepts("/a/b/orders/123/line"));
+
+        prefilter = PatternAnalyzer.prefilter(Pattern.compile("/(?:users|groups)/[^/]+/members(/\\d+)?"));
+        assertEquals(Arrays.asList("/members"), Arrays.asList(prefilter.getRequiredLiterals()));
+
+        prefilter = PatternAnalyzer.prefilter(Pattern.compile("/v1/ecom/(.*)"));
+        assertEquals(0, prefilter.getRequiredLiterals().length);
+    }
+
+    @Test
+    public void test_literal() {
+        assertEquals("/legacy/product-1234", PatternAnalyzer.literal(Pattern.compile("^/legacy/product-1234$")));
+        assertEquals("/v1/a.b", PatternAnalyzer.literal(Pattern.compile("/v1/a\\.b")));
+        assertEquals(null, PatternAnalyzer.literal(Pattern.compile("/v1/a.b")));
+        assertEquals(null, PatternAnalyzer.literal(Pattern.compile("/v1/items?")));
+        assertEquals(null, PatternAnalyzer.literal(Pattern.compile("/v1/\\d")));
+        assertEquals(null, PatternAnalyzer.literal(Pattern.compile("/v1|/v2")));
+        assertEquals(null, PatternAnalyzer.literal(Pattern.compile("/v1", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void test_unsupportedConstructs() {
+        Prefilter prefilter = PatternAnalyzer.prefilter(Pattern.compile("/(?i)upper"));
+        assertEquals(0, prefilter.getMinLength());
+        assertEquals(Prefilter.UNBOUNDED, prefilter.getMaxLength());
+
+        prefilter = PatternAnalyzer.prefilter(Pattern.compile("/upper", Pattern.CASE_INSENSITIVE));
+        assertTrue(prefilter.accepts("/UPPER"));
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RewriteCacheTest {
+
+    @Test
+    public void test_hitsAndMisses() {
+        RewriteCache cache = new RewriteCache(100);
+
+        assertNull(cache.get("/v1/ecom"));
+        cache.put("/v1/ecom", new RewriteCache.Rewrite("/product"));
+        cache.put("/v1/other", RewriteCache.Rewrite.NONE);
+
+        assertEquals("/product", cache.get("/v1/ecom").getPath());
+        assertSame(RewriteCache.Rewrite.NONE, cache.get("/v1/other"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void test_bounded() {
+        RewriteCache cache = new RewriteCache(32);
+
+        for (int idx = 0; idx < 1000; idx++) {
+            cache.put("/path/" + idx, RewriteCache.Rewrite.NONE);
+        }
+
+        assertEquals(1000 - cache.size(), cache.getEvictions());
+        assertEquals(true, cache.size() <= 32);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_invalidSize() {
+        new RewriteCache(0);
+    }
+}
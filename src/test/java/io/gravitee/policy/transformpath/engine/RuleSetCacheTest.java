@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.configuration.ValidationMode;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RuleSetCacheTest {
+
+    @Test
+    public void test_mappingsOnly() {
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setPathChanges(null);
+        configuration.setPathMappings(Collections.singletonMap("/v1/users", "/v2/users"));
+
+        CompiledRuleSet ruleSet = RuleSetCache.get(configuration);
+        assertEquals("/v2/users", ruleSet.map("/v1/users"));
+
+        // Compiled once, although the rule set does not keep the missing list of path changes
+        assertSame(ruleSet, RuleSetCache.get(configuration));
+    }
+
+    @Test
+    public void test_strictValidationFailureCached() {
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setValidation(ValidationMode.STRICT);
+        configuration.setPathChanges(Collections.singletonList(new PathChange(Pattern.compile("/v1/.*"), "/{#group[0]}")));
+
+        IllegalArgumentException first = reject(configuration);
+
+        // Rejected again without being validated again
+        assertSame(first.getCause(), reject(configuration).getCause());
+    }
+
+    private static IllegalArgumentException reject(TransformPathPolicyConfiguration configuration) {
+        try {
+            RuleSetCache.get(configuration);
+            fail("The path changes should be rejected");
+            return null;
+        } catch (IllegalArgumentException iae) {
+            return iae;
+        }
+    }
+}
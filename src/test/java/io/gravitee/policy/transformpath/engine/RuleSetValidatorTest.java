@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.ParameterChange;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.RegexEngine;
+import io.gravitee.policy.transformpath.configuration.TransformPathPolicyConfiguration;
+import io.gravitee.policy.transformpath.configuration.ValidationMode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RuleSetValidatorTest {
+
+    @Test
+    public void test_validRules() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/api/(?<version>v[0-9]+)/ecome.*"),
+                "/products/api/{#groupName['version']}/{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/ecom/(.*)/(.*)"), "/product/{#group[1].toUpperCase()}"));
+        pathChanges.add(new PathChange(Pattern.compile("(.*)/"), "{#request.headers['X-Tenant'][0]}"));
+
+        assertEquals(Collections.emptyList(), RuleSetValidator.validate(CompiledRuleSet.compile(pathChanges)));
+    }
+
+    @Test
+    public void test_groupReferences() {
+        PathChange pathChange = new PathChange(Pattern.compile("/v1/(?<id>\\d+)"), "/users/{#group[1]}/{#groupName['name']}");
+        pathChange.setParameters(Collections.singletonList(new ParameterChange("user", "{#group[3].trim()}")));
+
+        List<String> problems = RuleSetValidator.validate(CompiledRuleSet.compile(Collections.singletonList(pathChange)));
+
+        assertEquals(3, problems.size());
+        assertTrue(problems.get(0), problems.get(0).contains("#group[1]"));
+        assertTrue(problems.get(1), problems.get(1).contains("#groupName['name']"));
+        assertTrue(problems.get(2), problems.get(2).contains("query parameter user references #group[3]"));
+    }
+
+    @Test
+    public void test_malformedTemplate() {
+        List<String> problems = RuleSetValidator.validate(CompiledRuleSet.compile(Collections.singletonList(
+                new PathChange(Pattern.compile("/v1/(.*)"), "/products/{#group[0]"))));
+
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0), problems.get(0).contains("malformed resulting path"));
+    }
+
+    @Test
+    public void test_stagesBeyondMaxIterations() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("(.*)/"), "{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/(.*)"), "/v2/{#group[0]}"));
+        pathChanges.get(1).setStage(1);
+
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setMaxIterations(2);
+        assertEquals(Collections.emptyList(), RuleSetValidator.validate(CompiledRuleSet.compile(pathChanges, options)));
+
+        options.setMaxIterations(1);
+        List<String> problems = RuleSetValidator.validate(CompiledRuleSet.compile(pathChanges, options));
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0), problems.get(0).contains("2 stages but maxIterations is 1"));
+    }
+
+    @Test
+    public void test_cost() {
+        List<PathChange> pathChanges = Collections.singletonList(
+                new PathChange(Pattern.compile("/(.*a){12}b"), "/product"));
+
+        List<String> problems = RuleSetValidator.validate(CompiledRuleSet.compile(pathChanges));
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0), problems.get(0).contains("reads more than"));
+
+        // Matching in linear time with the linear engine
+        TransformPathPolicyConfiguration options = new TransformPathPolicyConfiguration();
+        options.setRegexEngine(RegexEngine.LINEAR);
+        assertEquals(Collections.emptyList(), RuleSetValidator.validate(CompiledRuleSet.compile(pathChanges, options)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_strictValidation() {
+        TransformPathPolicyConfiguration configuration = new TransformPathPolicyConfiguration();
+        configuration.setValidation(ValidationMode.STRICT);
+        configuration.setPathChanges(Collections.singletonList(new PathChange(Pattern.compile("/v1/.*"), "/{#group[0]}")));
+
+        RuleSetCache.get(configuration);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_missingPattern() {
+        CompiledRuleSet.compile(Collections.singletonList(new PathChange(null, "/product")));
+    }
+}
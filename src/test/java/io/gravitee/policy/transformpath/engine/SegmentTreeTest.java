@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import io.gravitee.policy.transformpath.configuration.RouteTemplate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class SegmentTreeTest {
+
+    private static final String[] RULES = {
+            "/v1/users/{id}/orders",
+            "/v1/users/{id}",
+            "regex:/v1/users/me.*",
+            "/v1/users/me",
+            "/v1/{resource}/{id}",
+            "/v1/files/{path*}",
+            "/v1/",
+            "/",
+            "/v2.0/a+b/{rest*}",
+            "regex:/v3/(\\w+)",
+            "/{all*}"
+    };
+
+    private static final String[] PATHS = {
+            "", "/", "//", "/v1", "/v1/", "/v1/users", "/v1/users/", "/v1/users/42", "/v1/users/42/", "/v1/users/42/orders",
+            "/v1/users/42/orders/1", "/v1/users/me", "/v1/users/meh", "/v1/users//orders", "/v1/stores/7", "/v1/files/",
+            "/v1/files/a/b/c", "/v2.0/a+b/", "/v2x0/a+b/x", "/v3/abc", "/v3/a/b", "/v1/users/a\nb"
+    };
+
+    @Test
+    public void test_sameMatchesAsRegex() {
+        List<PathChange> templates = new ArrayList<>();
+        List<PathChange> regexes = new ArrayList<>();
+        for (String rule : RULES) {
+            PathChange template = new PathChange();
+            PathChange regex = new PathChange();
+            if (rule.startsWith("regex:")) {
+                template.setPattern(Pattern.compile(rule.substring(6)));
+                regex.setPattern(Pattern.compile(rule.substring(6)));
+            } else {
+                template.setTemplate(RouteTemplate.parse(rule));
+                regex.setPattern(RouteTemplate.parse(rule).getPattern());
+            }
+            template.setPath("/target");
+            regex.setPath("/target");
+            templates.add(template);
+            regexes.add(regex);
+        }
+
+        CompiledRuleSet templateRuleSet = CompiledRuleSet.compile(templates);
+        CompiledRuleSet regexRuleSet = CompiledRuleSet.compile(regexes);
+
+        for (String path : PATHS) {
+            RuleMatch expected = regexRuleSet.match(path);
+            RuleMatch actual = templateRuleSet.match(path);
+
+            if (expected == null) {
+                assertNull(path, actual);
+                continue;
+            }
+
+            assertEquals(path, expected.getIndex(), actual.getIndex());
+            assertEquals(path, expected.groupCount(), actual.groupCount());
+            for (int group = 1; group <= expected.groupCount(); group++) {
+                assertEquals(path + ", group " + group, expected.group(group), actual.group(group));
+            }
+            assertEquals(path, expected.namedGroups(), actual.namedGroups());
+        }
+    }
+
+    @Test
+    public void test_invalidTemplates() {
+        String[] invalid = { "v1/users", "/v1/{id", "/v1/file.{ext}", "/v1/{1d}", "/{a}/{a}", "/{rest*}/x", null };
+        for (String template : invalid) {
+            try {
+                RouteTemplate.parse(template);
+                fail(template + " should be invalid");
+            } catch (IllegalArgumentException iae) {
+                // Expected
+            }
+        }
+    }
+}
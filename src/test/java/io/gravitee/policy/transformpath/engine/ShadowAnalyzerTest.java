@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.policy.transformpath.configuration.HeaderCondition;
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ShadowAnalyzerTest {
+
+    @Test
+    public void test_analyze() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        pathChanges.add(new PathChange(Pattern.compile("/v1/users/(.*)"), "/users/{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("/v1/users/(\\d+)"), "/users/{#group[0]}"));
+        pathChanges.add(new PathChange(Pattern.compile("/legacy/product-1"), "/catalog/1"));
+        pathChanges.add(new PathChange(Pattern.compile("^/legacy/product-1$"), "/catalog/2"));
+        pathChanges.add(new PathChange(Pattern.compile("/v2/items/[0-9]+"), "/items"));
+        pathChanges.add(new PathChange(Pattern.compile("/v3/.*"), "/other"));
+        pathChanges.add(new PathChange(Pattern.compile("/v2/items/.*"), "/items"));
+        pathChanges.add(new PathChange(Pattern.compile("^/v6/\\d+$"), "/numbers"));
+        pathChanges.add(new PathChange(Pattern.compile("/v6/[0-9]+"), "/digits"));
+
+        PathChange contradiction = new PathChange(Pattern.compile("/v5/(.*)"), "/tenants");
+        contradiction.setHeaders(Arrays.asList(new HeaderCondition("X-Tenant", "a"), new HeaderCondition("x-tenant", "b")));
+        pathChanges.add(contradiction);
+
+        List<ShadowAnalyzer.Finding> findings = ShadowAnalyzer.analyze(CompiledRuleSet.compile(pathChanges));
+
+        assertEquals(findings.toString(), 5, findings.size());
+        assertFinding(findings.get(0), ShadowAnalyzer.Kind.SHADOWED, 1, 0);
+        assertFinding(findings.get(1), ShadowAnalyzer.Kind.SHADOWED, 3, 2);
+        assertFinding(findings.get(2), ShadowAnalyzer.Kind.REDUNDANT, 4, 6);
+        assertFinding(findings.get(3), ShadowAnalyzer.Kind.SHADOWED, 8, 7);
+        assertFinding(findings.get(4), ShadowAnalyzer.Kind.UNREACHABLE, 9, -1);
+        assertTrue(findings.get(0).toString(), findings.get(0).toString().contains("shadowed by path change #0"));
+    }
+
+    @Test
+    public void test_conditions() {
+        List<PathChange> pathChanges = new ArrayList<>();
+        PathChange get = new PathChange(Pattern.compile("/v4/(.*)"), "/get");
+        get.setMethods(Arrays.asList(HttpMethod.GET, HttpMethod.HEAD));
+        pathChanges.add(get);
+        pathChanges.add(new PathChange(Pattern.compile("/v4/items"), "/items"));
+
+        PathChange post = new PathChange(Pattern.compile("/v4/orders"), "/orders");
+        post.setMethods(Arrays.asList(HttpMethod.GET, HttpMethod.POST));
+        pathChanges.add(post);
+
+        PathChange head = new PathChange(Pattern.compile("/v4/lines/\\d+"), "/lines");
+        head.setMethods(Arrays.asList(HttpMethod.HEAD));
+        pathChanges.add(head);
+
+        List<ShadowAnalyzer.Finding> findings = ShadowAnalyzer.analyze(CompiledRuleSet.compile(pathChanges));
+
+        // Only the path change applying to a subset of the methods of the first one is shadowed
+        assertEquals(findings.toString(), 1, findings.size());
+        assertFinding(findings.get(0), ShadowAnalyzer.Kind.SHADOWED, 3, 0);
+    }
+
+    private static void assertFinding(ShadowAnalyzer.Finding finding, ShadowAnalyzer.Kind kind, int index, int by) {
+        assertEquals(finding.toString(), kind, finding.getKind());
+        assertEquals(finding.toString(), index, finding.getIndex());
+        assertEquals(finding.toString(), by, finding.getByIndex());
+    }
+}
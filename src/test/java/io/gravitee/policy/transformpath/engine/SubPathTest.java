@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine;
+
+import io.gravitee.policy.transformpath.configuration.PathChange;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class SubPathTest {
+
+    @Test
+    public void test_view() {
+        SubPath subPath = new SubPath("/products/v1/ecom/search", 9);
+
+        assertEquals(15, subPath.length());
+        assertEquals('/', subPath.charAt(0));
+        assertEquals("v1", subPath.subSequence(1, 3));
+        assertEquals(3, subPath.indexOf("/ecom", 0));
+        assertEquals(8, subPath.indexOf('/', 4));
+        assertEquals(-1, subPath.indexOf("/products", 0));
+        assertEquals("/v1/ecom/search", subPath.toString());
+        assertSame(subPath.toString(), subPath.toString());
+    }
+
+    @Test
+    public void test_stringCompatibility() {
+        SubPath subPath = new SubPath("/products/v1/ecom/", 9);
+
+        assertEquals("/v1/ecom/".hashCode(), subPath.hashCode());
+        assertEquals("".hashCode(), new SubPath("/products", 9).hashCode());
+
+        // Equal to sub-paths only, for equality to stay symmetric
+        assertTrue(subPath.equals(new SubPath("/v1/ecom/", 0)));
+        assertTrue(new SubPath("/v1/ecom/", 0).equals(subPath));
+        assertFalse(subPath.equals(new SubPath("/v1/ecom", 0)));
+        assertFalse(subPath.equals("/v1/ecom/"));
+        assertFalse("/v1/ecom/".equals(subPath));
+
+        // Found among strings by the rewrite cache
+        RewriteCache cache = new RewriteCache(10);
+        cache.put("/v1/ecom/", new RewriteCache.Rewrite("/found"));
+        assertEquals("/found", cache.get(subPath).getPath());
+        assertNull(cache.get(new SubPath("/products/v1/ecom", 9)));
+    }
+
+    @Test
+    public void test_match() {
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(Collections.singletonList(
+                new PathChange(Pattern.compile("/v1/(?<resource>\\w+)/.*"), "/target")));
+
+        RuleMatch match = ruleSet.match(new SubPath("/products/v1/ecom/search", 9));
+        assertEquals("ecom", match.group("resource"));
+        assertEquals("ecom", match.group(1));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.engine.regex;
+
+import org.junit.Test;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class LinearRegexTest {
+
+    private static final String[] PATTERNS = {
+            "/v1/ecom/",
+            "/v1/ecom/(.*)",
+            "/api/(?<version>v[0-9]+)/stores.*",
+            "/v1/items?/\\d{2,4}",
+            "/v1/(a|bc)/x\\Q.y\\E?",
+            "/(?:users|groups)/[^/]+/members(/\\d+)?",
+            ".*/orders/(\\w+)/lines",
+            "/(.*)/(.*)",
+            "/(.*?)/(.*)",
+            "/(a*)(a*)",
+            "/(a*?)(a*)",
+            "/(a|ab)(c|bcd)?(d*)",
+            "/((a)|b)+",
+            "/(a+)+b",
+            "^/[a-c-]+\\b.*$",
+            "/\\x41\\u0042[\\t\\s]?\\d{0,2}x{2,}",
+            "[]/a-z]+",
+            "/emoji/(😀?)/end",
+            "/(\\w+)\\B(\\w)",
+            "/v1/ecom\\Z"
+    };
+
+    private static final String[] PATHS = {
+            "", "/", "/v1/ecom/", "/v1/ecom/search", "/api/v12/stores", "/api/v12/storesX", "/v1/item/12",
+            "/v1/items/1234", "/v1/items/12345", "/v1/a/x.y", "/v1/bc/x.", "/users/john/members",
+            "/groups/g/members/42", "/a/b/orders/123/lines", "/orders/1/lines", "/aaa", "/abcd", "/aab",
+            "/abab", "/aaaab", "/abc-x", "/AB 12xx", "/AB\t1xxx", "/emoji//end", "/emoji/😀/end", "/word",
+            "/v1/ecom\n", "/v1/ecom\r\n", "/a/b/c"
+    };
+
+    @Test
+    public void test_sameMatchesAsJdk() {
+        for (String regex : PATTERNS) {
+            Pattern pattern = Pattern.compile(regex);
+            LinearRegex linear = LinearRegex.compile(pattern);
+            assertEquals(regex, pattern.matcher("").groupCount(), linear.groupCount());
+
+            for (String path : PATHS) {
+                Matcher expected = pattern.matcher(path);
+                MatchResult actual = linear.match(path);
+
+                if (!expected.matches()) {
+                    assertNull(regex + " matched " + path, actual);
+                    continue;
+                }
+
+                assertNotNull(regex + " did not match " + path, actual);
+                for (int group = 0; group <= expected.groupCount(); group++) {
+                    assertEquals(regex + " on " + path + ", group " + group, expected.group(group), actual.group(group));
+                    assertEquals(regex + " on " + path + ", start " + group, expected.start(group), actual.start(group));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_repeatedGroups() {
+        // Same match, but the JDK engine keeps the value captured by an iteration it backtracked over
+        LinearRegex linear = LinearRegex.compile(Pattern.compile("(\\w{2}(?<n0>b{2}))+|.+$"));
+        assertEquals("aabb/a", linear.match("aabb/a").group(0));
+        assertNull(linear.match("aabb/a").group(2));
+        assertTrue(linear.isRepeated(1));
+        assertTrue(linear.isRepeated(2));
+
+        linear = LinearRegex.compile(Pattern.compile("^(((?<n0>.){1,2})a{1,2})+?$"));
+        assertEquals("/ba/a", linear.match("/ba/a").group(0));
+        assertEquals("/", linear.match("/ba/a").group(3));
+        assertTrue(linear.isRepeated(3));
+
+        // Or captured by an empty iteration
+        linear = LinearRegex.compile(Pattern.compile("(a*)*b"));
+        assertNull(linear.match("b").group(1));
+        assertTrue(linear.isRepeated(1));
+
+        linear = LinearRegex.compile(Pattern.compile("/(a|b)?/(\\d+)(?:/x)+"));
+        assertFalse(linear.isRepeated(1));
+        assertFalse(linear.isRepeated(2));
+    }
+
+    @Test
+    public void test_includes() {
+        assertTrue(includes("/a/\\d+", "/a/.*"));
+        assertFalse(includes("/a/.*", "/a/\\d+"));
+        assertTrue(includes("/a/[a-c]x", "/a/(?:a|b|c)x"));
+        assertTrue(includes("/a/(?:a|b|c)x", "/a/[a-c]x"));
+        assertFalse(includes("/a/[a-d]x", "/a/(?:a|b|c)x"));
+        assertTrue(includes("^/a/(\\w+)$", "/a/[^/]*"));
+        assertTrue(includes("/a/b", "^/a/\\w$"));
+        assertTrue(includes("/a/(b/)*c", "/a/(?:b/|c)+"));
+        assertFalse(includes("/a/(?:b/|c)+", "/a/(b/)*c"));
+        // Word boundaries are never proven to hold in the including pattern
+        assertFalse(includes("/a/b", "/a/\\bb"));
+        assertFalse(includes("/a/b", "^/b$|/c"));
+    }
+
+    @Test
+    public void test_hostileInput() {
+        LinearRegex linear = LinearRegex.compile(Pattern.compile("/(a+)+b"));
+
+        StringBuilder path = new StringBuilder("/");
+        for (int idx = 0; idx < 100000; idx++) {
+            path.append('a');
+        }
+
+        long start = System.nanoTime();
+        assertNull(linear.match(path));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+
+        path.append('b');
+        assertEquals(100000, linear.match(path).group(1).length());
+    }
+
+    @Test
+    public void test_unsupportedSyntax() {
+        String[] unsupported = {
+                "/x(y)\\1", "/a(?=b)", "/a(?!b)", "/(?<=a)b", "/(?>a)", "/a++", "/(?i)a", "/\\p{Alpha}",
+                "/[a[b]]", "/[a&&b]", "/\\k<name>", "/a{100000}"
+        };
+
+        for (String regex : unsupported) {
+            try {
+                LinearRegex.compile(Pattern.compile(regex));
+                fail(regex + " should not be supported");
+            } catch (IllegalArgumentException iae) {
+                // Expected
+            }
+        }
+
+        try {
+            LinearRegex.compile(Pattern.compile("/a", Pattern.CASE_INSENSITIVE));
+            fail("Flags should not be supported");
+        } catch (IllegalArgumentException iae) {
+            // Expected
+        }
+    }
+
+    private static boolean includes(String first, String second) {
+        return LinearRegex.includes(LinearRegex.compile(first), LinearRegex.compile(second), 4096);
+    }
+}
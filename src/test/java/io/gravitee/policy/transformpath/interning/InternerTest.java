@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.interning;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class InternerTest {
+
+    @Test
+    public void test_intern() {
+        Interner<String, Pattern> interner = Interners.create("test", String::length);
+
+        Pattern first = interner.intern("/v1/(.*)", Pattern::compile);
+        Pattern second = interner.intern(new String("/v1/(.*)"), Pattern::compile);
+        Pattern other = interner.intern("/v2/(.*)", Pattern::compile);
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(1, interner.getHits());
+        assertEquals(2, interner.getMisses());
+        assertEquals(1.0 / 3, interner.getReuseRate(), 0.0001);
+        assertEquals(2, interner.size());
+        assertEquals(16, interner.getRetainedWeight());
+        assertTrue(Interners.all().contains(interner));
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.transformpath.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void test_buckets() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(1, LatencyHistogram.bucket(1));
+        assertEquals(2, LatencyHistogram.bucket(2));
+        assertEquals(2, LatencyHistogram.bucket(3));
+        assertEquals(11, LatencyHistogram.bucket(1500));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void test_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int idx = 0; idx < 99; idx++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1024, histogram.getPercentile(50));
+        assertEquals(1024, histogram.getPercentile(99));
+        assertEquals(1 << 20, histogram.getPercentile(100));
+    }
+}